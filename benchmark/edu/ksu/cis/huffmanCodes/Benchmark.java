@@ -0,0 +1,149 @@
+// File: Benchmark.java
+// Times repeated runs of a piece of code.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times repeated runs of a piece of code.  Each measurement is preceded by
+ * a number of untimed warmup runs, so that the code has been compiled by
+ * the JIT before it is timed, and the median of the timed runs is reported
+ * along with the fastest.  The results reported are also kept, so that
+ * they can be written as JSON and compared across releases.  This is a
+ * small stand-in for a benchmarking harness such as JMH, which is not
+ * required to build this package.
+ */
+class Benchmark {
+
+  /**
+   * The code being timed.
+   */
+  interface Body {
+
+    /**
+     * Runs the code once.
+     * @throws Exception  If the code fails.
+     */
+    void run() throws Exception;
+  }
+
+  /**
+   * The number of untimed runs.
+   */
+  private int warmup;
+
+  /**
+   * The number of timed runs.
+   */
+  private int runs;
+
+  /**
+   * The results reported so far, each as a JSON object.
+   */
+  private List<String> results = new ArrayList<>();
+
+  /**
+   * Constructs a Benchmark with the given numbers of warmup and timed runs.
+   * @throws IllegalArgumentException  If runs is not positive or warmup is
+   *                                   negative.
+   */
+  public Benchmark(int warmup, int runs) throws IllegalArgumentException {
+    if (runs <= 0 || warmup < 0)
+      throw new IllegalArgumentException("Invalid number of runs");
+    this.warmup = warmup;
+    this.runs = runs;
+  }
+
+  /**
+   * Times the given code, returning the times of the timed runs, in
+   * nanoseconds, in increasing order.
+   * @throws Exception  If the code fails.
+   */
+  public long[] time(Body b) throws Exception {
+    for (int i = 0; i < warmup; i++) b.run();
+    long[] t = new long[runs];
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+      b.run();
+      t[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(t);
+    return t;
+  }
+
+  /**
+   * Times the given code and prints a line giving its median and fastest
+   * times and the median throughput.
+   * @param name   The name of the measurement.
+   * @param units  The number of units processed by each run.
+   * @param unit   The name of the units.
+   * @returns  The median time, in nanoseconds.
+   * @throws   Exception  If the code fails.
+   */
+  public long report(String name, long units, String unit, Body b)
+    throws Exception {
+    return report(name, units, unit, time(b));
+  }
+
+  /**
+   * Prints a line giving the median and fastest of the given times and the
+   * median throughput.
+   * @param name   The name of the measurement.
+   * @param units  The number of units processed by each run.
+   * @param unit   The name of the units.
+   * @param t      The times of the runs, in nanoseconds, in increasing
+   *               order.
+   * @returns  The median time, in nanoseconds.
+   */
+  public long report(String name, long units, String unit, long[] t) {
+    long median = t[t.length / 2];
+    double throughput = units * 1e3 / Math.max(median, 1);
+    System.out.printf("%-32s %10.3f ms %10.3f ms %10.1f M%s/s%n", name,
+		      median / 1e6, t[0] / 1e6, throughput, unit);
+    results.add(String.format(Locale.ROOT, "{\"name\":\"%s\","
+			      + "\"median_ns\":%d,\"fastest_ns\":%d,"
+			      + "\"units\":%d,\"unit\":\"%s\","
+			      + "\"throughput_m_per_s\":%.3f}",
+			      name, median, t[0], units, unit, throughput));
+    return median;
+  }
+
+  /**
+   * Writes the results reported so far to the given file as a JSON object,
+   * along with a description of the platform on which they were measured.
+   * @throws IOException  If the file cannot be written.
+   */
+  public void writeJson(Path p) throws IOException {
+    try (Writer w = Files.newBufferedWriter(p, StandardCharsets.UTF_8)) {
+      w.write(String.format(Locale.ROOT, "{\"timestamp\":\"%s\","
+			    + "\"java\":\"%s\",\"os\":\"%s %s\","
+			    + "\"processors\":%d,\"warmup\":%d,"
+			    + "\"runs\":%d,\"results\":[\n",
+			    Instant.now(), System.getProperty("java.version"),
+			    System.getProperty("os.name"),
+			    System.getProperty("os.arch"),
+			    Runtime.getRuntime().availableProcessors(),
+			    warmup, runs));
+      w.write(String.join(",\n", results));
+      w.write("\n]}\n");
+    }
+  }
+
+  /**
+   * Prints the heading for the lines printed by report.
+   */
+  public static void printHeading() {
+    System.out.printf("%-32s %13s %13s %15s%n", "Benchmark", "Median",
+		      "Fastest", "Throughput");
+  }
+}
@@ -0,0 +1,116 @@
+// File: DecodeBenchmark.java
+// Compares serial and parallel decoding of the same encoding.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares decoding an encoding with a single HuffmanDecoder to decoding it
+ * with a ParallelDecoder on pools of 1, 2, 4, ... threads, up to the number
+ * of available processors, and to decoding it on the common pool from a
+ * buffer holding the header written by ParallelEncoder.writeHeader, from
+ * which the tree and BlockIndex are read.  The encoding is produced by a
+ * ParallelEncoder from the text of a file, or from random text if no file
+ * is given.  Each parallel result is checked against the serial one.
+ * Usage:
+ * <pre>
+ * java DecodeBenchmark [file [charset [blockSize]]]
+ * </pre>
+ */
+public class DecodeBenchmark {
+
+  /**
+   * The number of characters of random text used when no file is given.
+   */
+  private static final int RANDOM_LENGTH = 1 << 25;
+
+  /**
+   * Runs the benchmark.
+   */
+  public static void main(String[] args) throws Exception {
+    char[] text = args.length > 0 ? readText(args) : randomText();
+    int blockSize = args.length > 2 ? Integer.parseInt(args[2])
+      : ParallelEncoder.DEFAULT_BLOCK_SIZE;
+    FrequencyCounter counter = new FrequencyCounter();
+    counter.add(text, 0, text.length);
+    HuffmanTree t = new HuffmanTree(counter);
+    ParallelEncoder enc = new ParallelEncoder(t, blockSize);
+    BlockIndex index = enc.index(text, 0, text.length);
+    ByteBuffer in = ByteBuffer.allocate((int) index.getByteCount());
+    enc.encode(text, 0, text.length, index, in);
+    in.flip();
+    System.out.printf("%d chars, %d blocks, %.3f bits/char%n", text.length,
+		      index.getBlockCount(),
+		      (double) index.getBitCount() / text.length);
+
+    Benchmark bench = new Benchmark(5, 10);
+    Benchmark.printHeading();
+    char[] expected = new char[text.length];
+    HuffmanDecoder dec = t.getDecoder();
+    long serial = bench.report("serial", text.length, "chars", () ->
+	dec.decode(new BitReader(in.duplicate()), expected, 0,
+		   expected.length));
+    if (!Arrays.equals(expected, text))
+      throw new IllegalStateException("Serial decoding failed");
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int n = 1; ; n *= 2) {
+      int threads = Math.min(n, cores);
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      ParallelDecoder pd = new ParallelDecoder(t, pool);
+      char[] out = new char[text.length];
+      long time = bench.report("parallel, " + threads + " threads",
+			       text.length, "chars",
+			       () -> pd.decode(in, index, out, 0));
+      pool.shutdown();
+      if (!Arrays.equals(out, expected))
+	throw new IllegalStateException("Parallel decoding failed");
+      System.out.printf("%-32s %10.2fx%n", "  speedup", (double) serial / time);
+      if (threads == cores) break;
+    }
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    enc.writeHeader(index, new DataOutputStream(header));
+    ByteBuffer file = ByteBuffer.allocate(header.size() + in.remaining());
+    file.put(header.toByteArray()).put(in.duplicate()).flip();
+    char[][] result = new char[1][];
+    long time = bench.report("parallel, from header", text.length, "chars",
+			     () -> result[0] = ParallelDecoder.decode
+			     (file.duplicate()));
+    if (!Arrays.equals(result[0], expected))
+      throw new IllegalStateException("Decoding from header failed");
+    System.out.printf("%-32s %10.2fx%n", "  speedup", (double) serial / time);
+  }
+
+  /**
+   * Reads the file named by the first argument, using the Charset named by
+   * the second, if any.
+   */
+  private static char[] readText(String[] args) throws Exception {
+    Charset cs = args.length > 1 ? Charset.forName(args[1])
+      : Charset.defaultCharset();
+    return new String(Files.readAllBytes(Paths.get(args[0])), cs)
+      .toCharArray();
+  }
+
+  /**
+   * Returns random text whose letter frequencies are skewed.
+   */
+  private static char[] randomText() {
+    Random r = new Random(1);
+    char[] text = new char[RANDOM_LENGTH];
+    for (int i = 0; i < text.length; i++) {
+      double x = r.nextDouble();
+      text[i] = (char) ('a' + (int) (26 * x * x * x));
+    }
+    return text;
+  }
+}
@@ -0,0 +1,154 @@
+// File: LayoutBenchmark.java
+// Measures the time and memory used to lay out large Huffman trees.
+
+package edu.ksu.cis.huffmanCodes;
+
+import edu.ksu.cis.viewer.BinaryTree;
+import edu.ksu.cis.viewer.Node;
+import edu.ksu.cis.viewer.TreeComponent;
+import java.lang.ref.Reference;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the time and memory used to lay out trees with 65,536 leaves,
+ * and a tree thousands of levels deep, both by a TreeLayout and by the
+ * package <tt>edu.ksu.cis.viewer</tt>, which lays out a tree as it builds
+ * its BinaryTree.  The memory reported is the growth of the heap, after
+ * garbage collection, while many layouts of the same tree are held at
+ * once, divided by their number, so that the noise in measuring the heap
+ * is spread over them.  Usage:
+ * <pre>
+ * java LayoutBenchmark
+ * </pre>
+ */
+public class LayoutBenchmark {
+
+  /**
+   * The number of leaves in the wide trees.
+   */
+  private static final int LEAVES = 1 << 16;
+
+  /**
+   * The depth of the deep tree.
+   */
+  private static final int DEPTH = 4096;
+
+  /**
+   * The least number of layouts held at once when measuring memory.
+   */
+  private static final int MIN_COPIES = 16;
+
+  /**
+   * The least total number of nodes in the layouts held at once when
+   * measuring memory, so that small trees are measured with more copies.
+   */
+  private static final int MIN_NODES = 1 << 20;
+
+  /**
+   * Runs the benchmark.
+   */
+  public static void main(String[] args) throws Exception {
+    Random r = new Random(1);
+    FrequencyModel uniform = new FrequencyModel();
+    FrequencyModel zipf = new FrequencyModel();
+    for (int i = 0; i < LEAVES; i++) {
+      uniform.add(i, 1000 + r.nextInt(1000));
+      zipf.add(i, 1 + (1L << 30) / (i + 1));
+    }
+    run("uniform", uniform.getTree());
+    run("zipf", zipf.getTree());
+    run("deep", deepTree());
+  }
+
+  /**
+   * Returns a tree in which each internal node has a leaf as its left
+   * child, DEPTH levels deep.
+   */
+  private static HuffmanTree deepTree() {
+    int nodes = 2 * DEPTH + 1;
+    int[] lefts = new int[nodes];
+    int[] rights = new int[nodes];
+    int[] syms = new int[nodes];
+    long[] counts = new long[nodes];
+    // Node 2k is the kth internal node and 2k + 1 its leaf; the last node
+    // is the deepest leaf.
+    for (int k = 0; k < DEPTH; k++) {
+      lefts[2 * k] = 2 * k + 1;
+      rights[2 * k] = 2 * k + 2;
+      lefts[2 * k + 1] = rights[2 * k + 1] = -1;
+      syms[2 * k + 1] = k;
+      counts[2 * k + 1] = DEPTH - k;
+    }
+    lefts[nodes - 1] = rights[nodes - 1] = -1;
+    syms[nodes - 1] = DEPTH;
+    counts[nodes - 1] = 1;
+    return new HuffmanTree(false, 0, lefts, rights, syms, counts);
+  }
+
+  /**
+   * Lays out the given tree both ways, printing the times, memory and
+   * widths.
+   */
+  private static void run(String name, HuffmanTree t) throws Exception {
+    int nodes = t.getNodeCount();
+    TreeLayout layout = new TreeLayout(t);
+    System.out.printf("%s: %d nodes, %d rows%n", name, nodes,
+		      layout.getRowCount());
+    Benchmark bench = new Benchmark(5, 10);
+    Benchmark.printHeading();
+    bench.report("TreeLayout", nodes, "nodes", () -> new TreeLayout(t));
+    System.out.printf("%-32s %10.2f MB %10d chars wide%n", "  retained",
+		      retained(() -> new TreeLayout(t), nodes) / 1e6,
+		      layout.getWidth());
+    bench.report("viewer", nodes, "nodes", () -> viewerTree(t));
+    TreeComponent c = viewerTree(t).getDrawing();
+    System.out.printf("%-32s %10.2f MB %10d chars wide%n", "  retained",
+		      retained(() -> viewerTree(t), nodes) / 1e6,
+		      c.getPreferredSize().width
+		      / c.getFontMetrics(c.getFont()).charWidth('m'));
+    System.out.println();
+  }
+
+  /**
+   * Returns the given tree as drawn by the viewer, as HuffmanTree builds it.
+   */
+  private static BinaryTree viewerTree(HuffmanTree t) {
+    int nodes = t.getNodeCount();
+    BinaryTree[] trees = new BinaryTree[nodes];
+    for (int i = 0; i < nodes; i++) {
+      int l = t.getLeft(i);
+      Node n = new Node(t.getNodeLabel(i));
+      if (l < 0) trees[i] = new BinaryTree(n, null, null);
+      else {
+	trees[i] = new BinaryTree(n, trees[l], trees[t.getRight(i)]);
+	trees[l] = trees[t.getRight(i)] = null;
+      }
+    }
+    return trees[nodes - 1];
+  }
+
+  /**
+   * Returns the approximate number of bytes retained by each object
+   * returned by the given code for a tree with the given number of nodes,
+   * measured with many of them held at once.
+   */
+  private static long retained(Supplier<Object> s, int nodes) {
+    Runtime rt = Runtime.getRuntime();
+    Object[] held = new Object[Math.max(MIN_COPIES, MIN_NODES / nodes)];
+    gc();
+    long before = rt.totalMemory() - rt.freeMemory();
+    for (int i = 0; i < held.length; i++) held[i] = s.get();
+    gc();
+    long after = rt.totalMemory() - rt.freeMemory();
+    Reference.reachabilityFence(held);
+    return (after - before) / held.length;
+  }
+
+  /**
+   * Runs the garbage collector several times.
+   */
+  private static void gc() {
+    for (int i = 0; i < 3; i++) System.gc();
+  }
+}
@@ -0,0 +1,298 @@
+// File: PipelineBenchmark.java
+// Times each stage of building and displaying a Huffman tree.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times each stage of building a Huffman tree and its frequency table, on
+ * inputs of four shapes:
+ * <ul>
+ * <li><tt>prose</tt>: English-like ASCII text;
+ * <li><tt>random</tt>: uniformly random bytes;
+ * <li><tt>zipf</tt>: characters from an alphabet of 65,536 symbols, with
+ *     frequencies following Zipf's law;
+ * <li><tt>fibonacci</tt>: characters whose counts are Fibonacci numbers,
+ *     giving the deepest possible tree.
+ * </ul>
+ * For each shape, it times counting the input, building the tree with
+ * each BuildStrategy, and separately the three phases of building with a
+ * heap: finding the frequencies, building the tree and generating the
+ * codes.  It also times the PriorityQueue operations performed in
+ * building the tree, building the frequency table, and sorting the table
+ * in each of the orders used by HuffmanFrame, both with a Comparator and,
+ * as a FrequencyTableModel does, by radix sorts of the primitive keys.  If a file is given, the
+ * results are also written to it as JSON.  Usage:
+ * <pre>
+ * java PipelineBenchmark [output.json [length]]
+ * </pre>
+ */
+public class PipelineBenchmark {
+
+  /**
+   * The default number of symbols in each input.
+   */
+  private static final int DEFAULT_LENGTH = 1 << 23;
+
+  /**
+   * The number of untimed runs of each measurement.
+   */
+  private static final int WARMUP = 5;
+
+  /**
+   * The number of timed runs of each measurement.
+   */
+  private static final int RUNS = 15;
+
+  /**
+   * The words from which prose is made, most common first.
+   */
+  private static final String[] WORDS = {
+    "the", "of", "and", "to", "a", "in", "is", "that", "it", "was", "for",
+    "on", "are", "as", "with", "his", "they", "at", "be", "this", "from",
+    "have", "or", "by", "one", "had", "not", "but", "what", "all", "were",
+    "when", "we", "there", "can", "an", "your", "which", "their", "said",
+    "if", "do", "will", "each", "about", "how", "up", "out", "them", "then",
+    "she", "many", "some", "so", "these", "would", "other", "into", "has",
+    "more", "her", "two", "like", "him", "see", "time", "could", "no",
+    "make", "than", "first", "been", "its", "who", "now", "people", "my",
+    "made", "over", "did", "down", "only", "way", "find", "use", "may",
+    "water", "long", "little", "very", "after", "words", "called", "just",
+    "where", "most", "know", "tree", "code", "symbol", "frequency"
+  };
+
+  /**
+   * The orders in which the frequency table is sorted.
+   */
+  private static final TableOrder[] ORDERS = {
+    TableOrder.DEFAULT, TableOrder.CHARACTER, TableOrder.ENCODING,
+    TableOrder.ENCODING_LENGTH, TableOrder.COUNT
+  };
+
+  /**
+   * The names of the orders in the results.
+   */
+  private static final String[] ORDER_NAMES = {
+    "default", "character", "encoding", "encodingLength", "count"
+  };
+
+  /**
+   * The Benchmark used for all measurements.
+   */
+  private static Benchmark bench = new Benchmark(WARMUP, RUNS);
+
+  /**
+   * Runs the benchmark.
+   */
+  public static void main(String[] args) throws Exception {
+    int length = args.length > 1 ? Integer.parseInt(args[1])
+      : DEFAULT_LENGTH;
+    Random r = new Random(1);
+    Benchmark.printHeading();
+    run("prose", prose(length, r));
+    run("random", randomBytes(length, r));
+    run("zipf", zipf(length, r));
+    run("fibonacci", fibonacci(length, r));
+    if (args.length > 0) bench.writeJson(Paths.get(args[0]));
+  }
+
+  /**
+   * Runs the measurements on the given text.
+   */
+  private static void run(String shape, char[] text) throws Exception {
+    FrequencyCounter counter = new FrequencyCounter();
+    counter.add(text, 0, text.length);
+    bench.report(shape + "/count", text.length, "chars", () -> {
+	FrequencyCounter c = new FrequencyCounter();
+	c.add(text, 0, text.length);
+      });
+    run(shape, counter);
+  }
+
+  /**
+   * Runs the measurements on the given bytes.
+   */
+  private static void run(String shape, byte[] data) throws Exception {
+    FrequencyCounter counter = new FrequencyCounter(true);
+    counter.add(data, 0, data.length);
+    bench.report(shape + "/count", data.length, "bytes", () -> {
+	FrequencyCounter c = new FrequencyCounter(true);
+	c.add(data, 0, data.length);
+      });
+    run(shape, counter);
+  }
+
+  /**
+   * Runs the measurements that depend only on the given counts.
+   */
+  private static void run(String shape, FrequencyCounter counter)
+    throws Exception {
+    int n = counter.getDistinctCount();
+    for (BuildStrategy s : BuildStrategy.values()) {
+      String name = shape + "/tree/" + s.name().toLowerCase();
+      bench.report(name, n, "symbols", () -> new HuffmanTree(counter, s));
+    }
+
+    // The phases of building with a heap, each timed on every run.
+    long[][] phases = new long[3][RUNS];
+    int[] run = { -WARMUP };
+    bench.time(() -> {
+	long[] t = new long[3];
+	new HuffmanTree(counter, BuildStrategy.HEAP, t);
+	if (run[0] >= 0) {
+	  for (int i = 0; i < 3; i++) phases[i][run[0]] = t[i];
+	}
+	run[0]++;
+      });
+    String[] names = { "findFrequencies", "buildTree", "generateEncodings" };
+    for (int i = 0; i < 3; i++) {
+      Arrays.sort(phases[i]);
+      bench.report(shape + "/phase/" + names[i], n, "symbols", phases[i]);
+    }
+
+    int[] syms = counter.getSymbols();
+    long[] counts = new long[n];
+    for (int i = 0; i < n; i++) counts[i] = counter.getCount(syms[i]);
+    bench.report(shape + "/priorityQueue", Math.max(4L * n - 3, 0), "ops",
+		 () -> mergeAll(counts));
+
+    HuffmanTree t = new HuffmanTree(counter);
+    bench.report(shape + "/getFrequencyTable", n, "entries",
+		 t::getFrequencyTable);
+    FrequencyTableEntry[] table = t.getFrequencyTable();
+    for (int i = 0; i < ORDERS.length; i++) {
+      TableOrder o = ORDERS[i];
+      String name = shape + "/sort/" + ORDER_NAMES[i];
+      bench.report(name, table.length, "entries",
+		   () -> Arrays.sort(table.clone(), o.getComparator()));
+      int[] perm = new int[table.length];
+      bench.report(name + "/keys", table.length, "entries", () -> {
+	  for (int j = 0; j < perm.length; j++) perm[j] = j;
+	  FrequencyTableModel.sort(table, perm, o);
+	});
+    }
+  }
+
+  /**
+   * Performs the PriorityQueue operations done by HuffmanTree in building
+   * a tree with the given counts: a put for each count, then two
+   * removeMins and a put for each merge.
+   */
+  private static void mergeAll(long[] counts) {
+    int n = counts.length;
+    PriorityQueue q = new PriorityQueue(n);
+    for (int i = 0; i < n; i++) q.put(counts[i], i);
+    for (int next = n; q.size() > 1; next++) {
+      long k = q.minKey();
+      q.removeMin();
+      k += q.minKey();
+      q.removeMin();
+      q.put(k, next);
+    }
+  }
+
+  /**
+   * Returns English-like text of the given length, made of common words
+   * chosen with frequencies following Zipf's law.
+   */
+  private static char[] prose(int length, Random r) {
+    double[] cumulative = zipfDistribution(WORDS.length);
+    StringBuilder sb = new StringBuilder(length + 16);
+    boolean capital = true;
+    while (sb.length() < length) {
+      String w = WORDS[sample(cumulative, r)];
+      if (capital) {
+	sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+	capital = false;
+      }
+      else sb.append(w);
+      int p = r.nextInt(100);
+      if (p < 6) {
+	sb.append(". ");
+	capital = true;
+      }
+      else if (p < 12) sb.append(", ");
+      else if (p < 14) sb.append('\n');
+      else sb.append(' ');
+    }
+    sb.setLength(length);
+    return sb.toString().toCharArray();
+  }
+
+  /**
+   * Returns the given number of uniformly random bytes.
+   */
+  private static byte[] randomBytes(int length, Random r) {
+    byte[] b = new byte[length];
+    r.nextBytes(b);
+    return b;
+  }
+
+  /**
+   * Returns text of the given length over all 65,536 chars, whose
+   * frequencies follow Zipf's law, with the ranks assigned to the chars at
+   * random.
+   */
+  private static char[] zipf(int length, Random r) {
+    int n = FrequencyCounter.CHAR_ALPHABET_SIZE;
+    double[] cumulative = zipfDistribution(n);
+    char[] symbol = new char[n];
+    for (int i = 0; i < n; i++) symbol[i] = (char) i;
+    for (int i = n - 1; i > 0; i--) {
+      int j = r.nextInt(i + 1);
+      char c = symbol[i];
+      symbol[i] = symbol[j];
+      symbol[j] = c;
+    }
+    char[] text = new char[length];
+    for (int i = 0; i < length; i++) text[i] = symbol[sample(cumulative, r)];
+    return text;
+  }
+
+  /**
+   * Returns text of at most the given length in which the counts of
+   * successive letters are successive Fibonacci numbers, as many as fit,
+   * in random order.
+   */
+  private static char[] fibonacci(int length, Random r) {
+    StringBuilder sb = new StringBuilder();
+    long a = 1, b = 1;
+    for (char c = '!'; sb.length() + a <= length && c <= '~'; c++) {
+      for (long i = 0; i < a; i++) sb.append(c);
+      long next = a + b;
+      a = b;
+      b = next;
+    }
+    char[] text = sb.toString().toCharArray();
+    for (int i = text.length - 1; i > 0; i--) {
+      int j = r.nextInt(i + 1);
+      char c = text[i];
+      text[i] = text[j];
+      text[j] = c;
+    }
+    return text;
+  }
+
+  /**
+   * Returns the cumulative distribution of Zipf's law with exponent 1 over
+   * n ranks.
+   */
+  private static double[] zipfDistribution(int n) {
+    double[] cumulative = new double[n];
+    double sum = 0;
+    for (int i = 0; i < n; i++) cumulative[i] = sum += 1.0 / (i + 1);
+    for (int i = 0; i < n; i++) cumulative[i] /= sum;
+    return cumulative;
+  }
+
+  /**
+   * Returns a rank chosen at random from the given cumulative distribution.
+   */
+  private static int sample(double[] cumulative, Random r) {
+    int i = Arrays.binarySearch(cumulative, r.nextDouble());
+    return Math.min(i < 0 ? -i - 1 : i, cumulative.length - 1);
+  }
+}
@@ -0,0 +1,173 @@
+// File: RoundTripCheck.java
+// Checks the encoder and decoder against a reference bit packer.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks HuffmanEncoder and HuffmanDecoder against a reference bit packer
+ * that writes, one bit at a time, the code Strings returned by
+ * HuffmanTree.getEncoding.  For each tree, random input is packed by the
+ * reference, the HuffmanEncoder's output is compared with it bit for bit,
+ * and it is decoded both in bulk and one symbol at a time.  The trees
+ * checked are built from random and skewed counts over small and large
+ * alphabets, with canonical and length-limited codes, from random bytes,
+ * from a single symbol, and from Fibonacci counts, whose codes are longer
+ * than 64 bits.  Any mismatch throws an IllegalStateException.  Usage:
+ * <pre>
+ * java RoundTripCheck [trials]
+ * </pre>
+ */
+public class RoundTripCheck {
+
+  /**
+   * The number of random trees of each kind checked by default.
+   */
+  private static final int TRIALS = 100;
+
+  /**
+   * The number of symbols of input encoded with each tree.
+   */
+  private static final int INPUT_LENGTH = 5000;
+
+  /**
+   * The number of Fibonacci counts, giving codes of up to 88 bits.
+   */
+  private static final int FIBONACCI_SYMBOLS = 89;
+
+  /**
+   * The number of trees checked.
+   */
+  private static int trees;
+
+  /**
+   * Runs the checks.
+   */
+  public static void main(String[] args) throws Exception {
+    int trials = args.length > 0 ? Integer.parseInt(args[0]) : TRIALS;
+    Random r = new Random(1);
+    for (int k = 0; k < trials; k++) {
+      FrequencyCounter c =
+	randomCounts(r, 2 + r.nextInt(k % 2 == 0 ? 30 : 3000));
+      HuffmanTree t = new HuffmanTree(c);
+      check(t, r);
+      check(t.getCanonical(), r);
+      int n = t.getSymbolCount();
+      int min = 32 - Integer.numberOfLeadingZeros(n - 1);
+      check(new HuffmanTree(c, min + r.nextInt(4)), r);
+      byte[] b = new byte[1 + r.nextInt(INPUT_LENGTH)];
+      for (int i = 0; i < b.length; i++)
+	b[i] = (byte) (r.nextGaussian() * (1 + k % 40));
+      check(HuffmanTree.fromBytes(b), r);
+    }
+    check(new HuffmanTree("aaaa"), r);
+    FrequencyModel fib = new FrequencyModel();
+    long x = 1, y = 1;
+    for (int i = 0; i < FIBONACCI_SYMBOLS; i++) {
+      fib.add('a' + i, x);
+      long z = x + y;
+      x = y;
+      y = z;
+    }
+    check(fib.getTree(), r);
+    System.out.printf("%d trees checked%n", trees);
+  }
+
+  /**
+   * Returns a FrequencyCounter with counts for n random symbols, which are
+   * skewed for about half the calls.
+   */
+  private static FrequencyCounter randomCounts(Random r, int n) {
+    FrequencyCounter c = new FrequencyCounter();
+    boolean skewed = r.nextBoolean();
+    char[] buf = new char[1 << 12];
+    for (int i = 0; i < n; i++) {
+      int count = skewed ? 1 << r.nextInt(12) : 1 + r.nextInt(100);
+      Arrays.fill(buf, 0, count, (char) r.nextInt(1 << 16));
+      c.add(buf, 0, count);
+    }
+    return c;
+  }
+
+  /**
+   * Checks the encoder and decoder of the given tree on random input drawn
+   * from its symbols.
+   */
+  private static void check(HuffmanTree t, Random r) throws Exception {
+    int n = t.getSymbolCount();
+    char[] text = new char[1 + r.nextInt(INPUT_LENGTH)];
+    for (int i = 0; i < text.length; i++)
+      text[i] = (char) t.getSymbol(r.nextInt(n));
+
+    String[] codes = new String[n];
+    long bits = 0;
+    for (int i = 0; i < n; i++)
+      codes[i] = t.getEncoding(Character.valueOf((char) t.getSymbol(i)));
+    for (char ch : text) bits += codes[index(t, ch)].length();
+    byte[] expected = new byte[(int) ((bits + 7) / 8)];
+    long pos = 0;
+    for (char ch : text) {
+      String s = codes[index(t, ch)];
+      for (int k = 0; k < s.length(); k++, pos++)
+	if (s.charAt(k) == '1')
+	  expected[(int) (pos >>> 3)] |= (byte) (0x80 >>> (pos & 7));
+    }
+
+    ByteBuffer out = ByteBuffer.allocate(expected.length);
+    BitWriter w = new BitWriter(out);
+    long written = t.getEncoder().encode(text, 0, text.length, w);
+    w.finish();
+    if (written != bits || !Arrays.equals(out.array(), expected))
+      throw new IllegalStateException("Encoding differs: " + describe(t));
+
+    HuffmanDecoder dec = t.getDecoder();
+    char[] decoded = new char[text.length];
+    dec.decode(new BitReader(ByteBuffer.wrap(expected)), decoded, 0,
+	       decoded.length);
+    if (!Arrays.equals(decoded, text))
+      throw new IllegalStateException("Decoding differs: " + describe(t));
+    BitReader in = new BitReader(ByteBuffer.wrap(expected));
+    for (int i = 0; i < text.length; i++) {
+      if (dec.decodeOne(in) != text[i])
+	throw new IllegalStateException("decodeOne differs at " + i + ": "
+					+ describe(t));
+    }
+    if (t.isByteAlphabet()) {
+      byte[] b = new byte[text.length];
+      dec.decode(new BitReader(ByteBuffer.wrap(expected)), b, 0, b.length);
+      for (int i = 0; i < b.length; i++) {
+	if ((b[i] & 0xff) != text[i])
+	  throw new IllegalStateException("Byte decoding differs: "
+					  + describe(t));
+      }
+    }
+    trees++;
+  }
+
+  /**
+   * Returns the leaf index of the given symbol in the given tree.
+   */
+  private static int index(HuffmanTree t, char ch) {
+    int lo = 0, hi = t.getSymbolCount() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (t.getSymbol(mid) < ch) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  /**
+   * Returns a short description of the given tree.
+   */
+  private static String describe(HuffmanTree t) {
+    return String.format("%d %s symbols, longest code %d%s",
+			 t.getSymbolCount(),
+			 t.isByteAlphabet() ? "byte" : "char",
+			 t.getMaxCodeLength(),
+			 t.isCanonical() ? ", canonical" : "");
+  }
+}
@@ -0,0 +1,233 @@
+// File: SerializationBenchmark.java
+// Compares the formats in which a Huffman tree can be stored.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Compares the size of a stored Huffman tree, and the time taken to write
+ * and read it, in three formats:
+ * <ul>
+ * <li><tt>compact</tt>: the format of HuffmanTree.write, over a
+ *     DataOutputStream;
+ * <li><tt>serialized</tt>: Java serialization, which now writes the same
+ *     format inside an ObjectOutputStream;
+ * <li><tt>legacy</tt>: Java serialization of the fields that default
+ *     serialization wrote before HuffmanTree had a serialized form of its
+ *     own.
+ * </ul>
+ * Many trees are written to one stream, as when storing a large number of
+ * codebooks, so the sizes printed are per tree, while the throughput is
+ * given in symbols.  The trees measured are built from English-like text,
+ * from random bytes with and without a limit on the code length, by
+ * adaptive Huffman coding, and from 65,536 symbols with Zipfian counts.  If
+ * a file is given, the results are also written to it as JSON.  Usage:
+ * <pre>
+ * java SerializationBenchmark [output.json]
+ * </pre>
+ */
+public class SerializationBenchmark {
+
+  /**
+   * The number of untimed runs of each measurement.
+   */
+  private static final int WARMUP = 5;
+
+  /**
+   * The number of timed runs of each measurement.
+   */
+  private static final int RUNS = 15;
+
+  /**
+   * The approximate total number of symbols in the trees written to each
+   * stream.
+   */
+  private static final int BATCH_SYMBOLS = 1 << 20;
+
+  /**
+   * The Benchmark used for all measurements.
+   */
+  private static Benchmark bench = new Benchmark(WARMUP, RUNS);
+
+  /**
+   * Runs the benchmark.
+   */
+  public static void main(String[] args) throws Exception {
+    Random r = new Random(1);
+    StringBuilder text = new StringBuilder();
+    String letters = "etaoinshrdlcumwfgypbvkjxqz ETAOINSHRDLCUMWFGYPBVKJXQZ.,";
+    for (int i = 0; i < 10000; i++) {
+      int k = (int) Math.min(letters.length() - 1,
+			     Math.abs(r.nextGaussian() * 12));
+      text.append(letters.charAt(k));
+    }
+    byte[] data = new byte[1 << 16];
+    r.nextBytes(data);
+    FrequencyCounter byteCounter = new FrequencyCounter(true);
+    byteCounter.add(data, 0, data.length);
+    AdaptiveHuffman adaptive = new AdaptiveHuffman();
+    for (int i = 0; i < text.length(); i++) adaptive.update(text.charAt(i));
+    FrequencyModel zipf = new FrequencyModel();
+    for (int i = 0; i < FrequencyCounter.CHAR_ALPHABET_SIZE; i++)
+      zipf.add(i, 1 + (1L << 30) / (i + 1));
+
+    Benchmark.printHeading();
+    run("text", new HuffmanTree(text.toString()));
+    run("bytes", new HuffmanTree(byteCounter));
+    run("limited", new HuffmanTree(byteCounter, 12));
+    run("adaptive", adaptive.snapshot());
+    run("zipf", zipf.getTree());
+    if (args.length > 0) bench.writeJson(Paths.get(args[0]));
+  }
+
+  /**
+   * Runs the measurements on copies of the given tree.
+   */
+  private static void run(String name, HuffmanTree t) throws Exception {
+    int n = Math.max(1, t.getSymbolCount());
+    int copies = Math.max(1, BATCH_SYMBOLS / n);
+    long symbols = (long) copies * n;
+    byte[] b = writeCompact(t, 1);
+    HuffmanTree[] trees = new HuffmanTree[copies];
+    LegacyForm[] legacy = new LegacyForm[copies];
+    for (int i = 0; i < copies; i++) {
+      trees[i] = HuffmanTree.read(new DataInputStream
+				  (new ByteArrayInputStream(b)));
+      legacy[i] = new LegacyForm(trees[i]);
+    }
+
+    byte[] compact = writeCompact(t, copies);
+    byte[] serialized = writeObjects(trees);
+    byte[] old = writeObjects(legacy);
+    System.out.printf("%s: %d symbols, %d trees; bytes per tree: "
+		      + "compact %d, serialized %d, legacy %d%n", name,
+		      t.getSymbolCount(), copies, compact.length / copies,
+		      serialized.length / copies, old.length / copies);
+    bench.report(name + "/compact/write", symbols, "symbols",
+		 () -> writeCompact(t, copies));
+    bench.report(name + "/compact/read", symbols, "symbols",
+		 () -> readCompact(compact, copies));
+    bench.report(name + "/serialized/write", symbols, "symbols",
+		 () -> writeObjects(trees));
+    bench.report(name + "/serialized/read", symbols, "symbols",
+		 () -> readObjects(serialized, copies));
+    bench.report(name + "/legacy/write", symbols, "symbols",
+		 () -> writeObjects(legacy));
+    bench.report(name + "/legacy/read", symbols, "symbols",
+		 () -> readObjects(old, copies));
+    System.out.println();
+  }
+
+  /**
+   * Returns the given number of copies of the given tree written by
+   * HuffmanTree.write.
+   */
+  private static byte[] writeCompact(HuffmanTree t, int copies)
+    throws Exception {
+    ByteArrayOutputStream b = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(b);
+    for (int i = 0; i < copies; i++) t.write(out);
+    out.flush();
+    return b.toByteArray();
+  }
+
+  /**
+   * Reads the given number of trees written by HuffmanTree.write.
+   */
+  private static void readCompact(byte[] b, int copies) throws Exception {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+    for (int i = 0; i < copies; i++) HuffmanTree.read(in);
+  }
+
+  /**
+   * Returns the given objects serialized to one stream.
+   */
+  private static byte[] writeObjects(Object[] objects) throws Exception {
+    ByteArrayOutputStream b = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(b)) {
+      for (Object o : objects) out.writeObject(o);
+    }
+    return b.toByteArray();
+  }
+
+  /**
+   * Reads the given number of objects from the given serialized stream.
+   */
+  private static void readObjects(byte[] b, int copies) throws Exception {
+    try (ObjectInputStream in =
+	 new ObjectInputStream(new ByteArrayInputStream(b))) {
+      for (int i = 0; i < copies; i++) in.readObject();
+    }
+  }
+
+  /**
+   * The fields of a HuffmanTree written by default serialization before
+   * it had a serialized form of its own.
+   */
+  private static class LegacyForm implements Serializable {
+
+    private int[] symbols;
+    private int[] codeLengths;
+    private long[] codes;
+    private BitSet[] longCodes;
+    private boolean byteAlphabet;
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+    private long[] weight;
+    private boolean canonical;
+    private int lengthLimit;
+
+    /**
+     * Used for consistency in serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the LegacyForm of the given tree.
+     */
+    public LegacyForm(HuffmanTree t) {
+      int n = t.getSymbolCount();
+      int nodes = t.getNodeCount();
+      symbols = new int[n];
+      codeLengths = new int[n];
+      codes = new long[n];
+      left = new int[nodes];
+      right = new int[nodes];
+      parent = new int[nodes];
+      weight = new long[nodes];
+      for (int i = 0; i < n; i++) {
+	symbols[i] = t.getSymbol(i);
+	codeLengths[i] = t.getCodeLength(i);
+	if (codeLengths[i] <= 64) codes[i] = t.getCode(i);
+	else {
+	  if (longCodes == null) longCodes = new BitSet[n];
+	  longCodes[i] = t.getLongCode(i);
+	}
+	weight[i] = t.getLongCount(Character.valueOf((char) symbols[i]));
+      }
+      if (nodes > 0) parent[nodes - 1] = -1;
+      for (int i = 0; i < nodes; i++) {
+	left[i] = t.getLeft(i);
+	right[i] = t.getRight(i);
+	if (left[i] >= 0) {
+	  parent[left[i]] = parent[right[i]] = i;
+	  weight[i] = weight[left[i]] + weight[right[i]];
+	}
+      }
+      byteAlphabet = t.isByteAlphabet();
+      canonical = t.isCanonical();
+      lengthLimit = t.getLengthLimit();
+    }
+  }
+}
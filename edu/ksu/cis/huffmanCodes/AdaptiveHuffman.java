@@ -0,0 +1,424 @@
+// File: AdaptiveHuffman.java
+// Encodes and decodes in one pass with a Huffman tree that adapts to the input.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes or decodes a stream of symbols in a single pass using adaptive
+ * Huffman coding (the FGK algorithm).  The tree starts out holding only a
+ * zero-weight leaf, the NYT ("not yet transmitted") node.  The first
+ * occurrence of a symbol is sent as the code of the NYT node followed by
+ * the symbol itself in 8 or 16 bits; the NYT node then splits into a new
+ * NYT node and a leaf for the symbol.  After each symbol, the weights
+ * along its path are incremented, and the tree is rearranged so that it
+ * remains a Huffman tree for the counts seen so far.  An encoder and a
+ * decoder that process the same symbols therefore hold the same tree.
+ * <p>
+ * The tree is kept in arrays.  The nodes are also numbered so that weights
+ * never decrease as numbers increase and siblings have consecutive numbers
+ * (the sibling property).  Before a node's weight is incremented, it is
+ * swapped with the highest-numbered node of equal weight, unless that node
+ * is its parent.  That node is found by a search over the numbering taking
+ * time logarithmic in the number of nodes of equal weight, so each symbol
+ * takes little more than time proportional to the length of its code.
+ */
+public class AdaptiveHuffman {
+
+  /**
+   * Indicates whether the symbols are bytes rather than characters.
+   */
+  private boolean byteAlphabet;
+
+  /**
+   * The number of bits in which a new symbol is sent.
+   */
+  private int symbolBits;
+
+  /**
+   * The left child of each node, or -1 for a leaf.
+   */
+  private int[] left;
+
+  /**
+   * The right child of each node, or -1 for a leaf.
+   */
+  private int[] right;
+
+  /**
+   * The parent of each node, or -1 for the root.
+   */
+  private int[] parent;
+
+  /**
+   * The symbol at each leaf other than the NYT node.
+   */
+  private int[] symbol;
+
+  /**
+   * The weight of each node.
+   */
+  private long[] weight;
+
+  /**
+   * The number of each node in the sibling ordering.
+   */
+  private int[] number;
+
+  /**
+   * The node having each number.  Numbers below that of the NYT node are
+   * unused.
+   */
+  private int[] order;
+
+  /**
+   * The leaf of each symbol, or -1 if the symbol has not occurred.
+   */
+  private int[] leaf;
+
+  /**
+   * The number of nodes.
+   */
+  private int size;
+
+  /**
+   * The root, which is node 0.
+   */
+  private static final int ROOT = 0;
+
+  /**
+   * The NYT node.
+   */
+  private int nyt;
+
+  /**
+   * The bits of a code, collected from the leaf upward, 64 per element.
+   */
+  private long[] path;
+
+  /**
+   * Constructs an AdaptiveHuffman coder for characters.
+   */
+  public AdaptiveHuffman() {
+    this(false);
+  }
+
+  /**
+   * Constructs an AdaptiveHuffman coder for bytes if the given value is
+   * <tt>true</tt>, or for characters otherwise.
+   */
+  public AdaptiveHuffman(boolean bytes) {
+    byteAlphabet = bytes;
+    int alphabet = bytes ? FrequencyCounter.BYTE_ALPHABET_SIZE
+      : FrequencyCounter.CHAR_ALPHABET_SIZE;
+    symbolBits = bytes ? 8 : 16;
+    int nodes = 2*alphabet + 1;
+    left = new int[nodes];
+    right = new int[nodes];
+    parent = new int[nodes];
+    symbol = new int[nodes];
+    weight = new long[nodes];
+    number = new int[nodes];
+    order = new int[nodes];
+    leaf = new int[alphabet];
+    Arrays.fill(leaf, -1);
+    path = new long[nodes/64 + 1];
+    size = 1;
+    left[ROOT] = -1;
+    right[ROOT] = -1;
+    parent[ROOT] = -1;
+    number[ROOT] = nodes - 1;
+    order[nodes - 1] = ROOT;
+    nyt = ROOT;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the symbols are bytes rather than characters.
+   */
+  public boolean isByteAlphabet() {
+    return byteAlphabet;
+  }
+
+  /**
+   * Returns the number of symbols processed so far.
+   */
+  public long getWeight() {
+    return weight[ROOT];
+  }
+
+  /**
+   * Returns the number of times the given symbol has occurred so far.
+   */
+  public long getCount(int sym) {
+    int v = sym >= 0 && sym < leaf.length ? leaf[sym] : -1;
+    return v < 0 ? 0 : weight[v];
+  }
+
+  /**
+   * Returns the length of the code the given symbol would be sent with
+   * next, including the bits of the symbol itself if it has not occurred.
+   * @throws IllegalArgumentException  If the symbol is out of range.
+   */
+  public int getCodeLength(int sym) throws IllegalArgumentException {
+    checkSymbol(sym);
+    int v = leaf[sym];
+    return v < 0 ? depth(nyt) + symbolBits : depth(v);
+  }
+
+  /**
+   * Encodes the given symbol and updates the tree.
+   * @throws IllegalArgumentException  If the symbol is out of range.
+   * @throws IOException               If an I/O error occurs.
+   */
+  public void encode(int sym, BitWriter out)
+    throws IllegalArgumentException, IOException {
+    checkSymbol(sym);
+    int v = leaf[sym];
+    if (v >= 0) writePath(v, out);
+    else {
+      writePath(nyt, out);
+      out.write(sym, symbolBits);
+    }
+    update(sym);
+  }
+
+  /**
+   * Encodes the characters of the given CharSequence, updating the tree.
+   * @return  The number of bits written.
+   * @throws IllegalArgumentException  If the symbols are bytes and a
+   *                                   character is out of range.
+   * @throws IOException               If an I/O error occurs.
+   */
+  public long encode(CharSequence s, BitWriter out)
+    throws IllegalArgumentException, IOException {
+    long start = out.getBitCount();
+    int n = s.length();
+    for (int i = 0; i < n; i++) encode(s.charAt(i), out);
+    return out.getBitCount() - start;
+  }
+
+  /**
+   * Encodes the given portion of a byte array, updating the tree.  Each
+   * byte is encoded as the symbol having its unsigned value.
+   * @return  The number of bits written.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public long encode(byte[] b, int off, int len, BitWriter out)
+    throws IOException {
+    long start = out.getBitCount();
+    int end = off + len;
+    for (int i = off; i < end; i++) encode(b[i] & 0xff, out);
+    return out.getBitCount() - start;
+  }
+
+  /**
+   * Decodes one symbol and updates the tree.
+   * @throws java.io.EOFException  If the input ends first.
+   * @throws IOException           If an I/O error occurs.
+   */
+  public int decode(BitReader in) throws IOException {
+    int v = ROOT;
+    while (left[v] >= 0) {
+      long bits = in.peek(56);
+      int k = 0;
+      while (left[v] >= 0 && k < 56) {
+	v = (bits >>> (55 - k) & 1) == 0 ? left[v] : right[v];
+	k++;
+      }
+      in.skip(k);
+    }
+    int sym = v == nyt ? (int) in.read(symbolBits) : symbol[v];
+    update(sym);
+    return sym;
+  }
+
+  /**
+   * Decodes len characters into the given array, beginning at index off,
+   * updating the tree.
+   * @throws java.io.EOFException  If the input ends first.
+   * @throws IOException           If an I/O error occurs.
+   */
+  public void decode(BitReader in, char[] out, int off, int len)
+    throws IOException {
+    int end = off + len;
+    for (int i = off; i < end; i++) out[i] = (char) decode(in);
+  }
+
+  /**
+   * Decodes len bytes into the given array, beginning at index off,
+   * updating the tree.
+   * @throws java.io.EOFException  If the input ends first.
+   * @throws IOException           If an I/O error occurs.
+   */
+  public void decode(BitReader in, byte[] out, int off, int len)
+    throws IOException {
+    int end = off + len;
+    for (int i = off; i < end; i++) out[i] = (byte) decode(in);
+  }
+
+  /**
+   * Records an occurrence of the given symbol, updating the tree without
+   * encoding anything.
+   * @throws IllegalArgumentException  If the symbol is out of range.
+   */
+  public void update(int sym) throws IllegalArgumentException {
+    checkSymbol(sym);
+    int v = leaf[sym];
+    if (v < 0) {
+      // The NYT node becomes the parent of a new NYT node and a new leaf.
+      int old = nyt;
+      int s = size++;
+      nyt = size++;
+      addChild(s, old, number[old] - 1);
+      addChild(nyt, old, number[old] - 2);
+      left[old] = nyt;
+      right[old] = s;
+      symbol[s] = sym;
+      leaf[sym] = s;
+      // The new leaf and the old NYT node, now both of weight 1, keep the
+      // lowest numbers above the NYT node, so neither moves.
+      weight[s] = 1;
+      weight[old] = 1;
+      if (old == ROOT) return;
+      v = parent[old];
+    }
+    while (v != ROOT) {
+      int lead = order[findLeader(v)];
+      if (lead != v && lead != parent[v]) swap(v, lead);
+      weight[v]++;
+      v = parent[v];
+    }
+    weight[ROOT]++;
+  }
+
+  /**
+   * Returns a HuffmanTree having the current shape, symbols and counts of
+   * this tree, with the NYT node removed.  It may be displayed using
+   * getDrawing and getFrequencyTable like any other HuffmanTree, but its
+   * codes are those the symbols would be sent with if the NYT node were
+   * not present.
+   */
+  public HuffmanTree snapshot() {
+    int[] l = Arrays.copyOf(left, size);
+    int[] r = Arrays.copyOf(right, size);
+    int root = ROOT;
+    int p = parent[nyt];
+    if (p < 0) root = -1;
+    else {
+      int sibling = l[p] == nyt ? r[p] : l[p];
+      int g = parent[p];
+      if (g < 0) root = sibling;
+      else if (l[g] == p) l[g] = sibling;
+      else r[g] = sibling;
+    }
+    return new HuffmanTree(byteAlphabet, root, l, r, symbol, weight);
+  }
+
+  /**
+   * Throws an IllegalArgumentException if the given symbol is not in the
+   * alphabet.
+   */
+  private void checkSymbol(int sym) throws IllegalArgumentException {
+    if (sym < 0 || sym >= leaf.length)
+      throw new IllegalArgumentException("Symbol out of range: " + sym);
+  }
+
+  /**
+   * Makes the new node v a leaf and a child of node p, with the given
+   * number.
+   */
+  private void addChild(int v, int p, int num) {
+    left[v] = -1;
+    right[v] = -1;
+    parent[v] = p;
+    weight[v] = 0;
+    number[v] = num;
+    order[num] = v;
+  }
+
+  /**
+   * Returns the highest number of a node having the same weight as node v,
+   * which is not the root.  Because weights do not decrease as numbers
+   * increase, no node numbered above v's parent can have v's weight unless
+   * the parent does, so this number usually lies between those of v and
+   * its parent.  It is found by searching upward from v in steps that double,
+   * then by binary search, so short runs of equal weights are found
+   * quickly.
+   */
+  private int findLeader(int v) {
+    long w = weight[v];
+    int lo = number[v];
+    int p = parent[v];
+    int top = weight[p] == w ? order.length - 1 : number[p];
+    int step = 1;
+    while (lo + step <= top && weight[order[lo + step]] == w) {
+      lo += step;
+      step <<= 1;
+    }
+    int hi = Math.min(lo + step, top + 1) - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (weight[order[mid]] == w) lo = mid;
+      else hi = mid - 1;
+    }
+    return lo;
+  }
+
+  /**
+   * Exchanges the positions in the tree of nodes a and b, together with
+   * their subtrees and numbers.  Neither may be an ancestor of the other.
+   */
+  private void swap(int a, int b) {
+    int pa = parent[a];
+    int pb = parent[b];
+    if (pa == pb) {
+      int t = left[pa];
+      left[pa] = right[pa];
+      right[pa] = t;
+    }
+    else {
+      if (left[pa] == a) left[pa] = b;
+      else right[pa] = b;
+      if (left[pb] == b) left[pb] = a;
+      else right[pb] = a;
+      parent[a] = pb;
+      parent[b] = pa;
+    }
+    int na = number[a];
+    number[a] = number[b];
+    number[b] = na;
+    order[number[a]] = a;
+    order[number[b]] = b;
+  }
+
+  /**
+   * Returns the depth of node v.
+   */
+  private int depth(int v) {
+    int d = 0;
+    for (; parent[v] >= 0; v = parent[v]) d++;
+    return d;
+  }
+
+  /**
+   * Writes the code of node v, the path from the root to v.  The bits are
+   * collected from v upward into path, the last bit of the code in the
+   * low-order bit of path[0].
+   */
+  private void writePath(int v, BitWriter out) throws IOException {
+    int len = 0;
+    long bits = 0;
+    for (; parent[v] >= 0; v = parent[v]) {
+      if (right[parent[v]] == v) bits |= 1L << (len & 63);
+      if ((++len & 63) == 0) {
+	path[(len >>> 6) - 1] = bits;
+	bits = 0;
+      }
+    }
+    int full = len >>> 6;
+    if ((len & 63) != 0) out.write(bits, len & 63);
+    for (int k = full - 1; k >= 0; k--) out.write(path[k], 64);
+  }
+}
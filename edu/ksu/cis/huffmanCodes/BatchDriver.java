@@ -0,0 +1,459 @@
+// File: BatchDriver.java
+// A command-line program that analyzes many files without a display.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A command-line program that builds a Huffman tree for each of a set of
+ * files, and for each file in a set of directories and their
+ * subdirectories, writing the frequency table, code lengths and encoded
+ * size of each as CSV or as JSON, one object per line.  It uses no
+ * graphics, so it may be run on a server without a display.  Usage:
+ * <pre>
+ * java edu.ksu.cis.huffmanCodes.BatchDriver [options] path ...
+ * </pre>
+ * The options are:
+ * <dl>
+ * <dt><tt>-bytes</tt>
+ * <dd>Count the bytes of each file rather than its characters.
+ * <dt><tt>-charset</tt> <i>name</i>
+ * <dd>Decode the files using the given Charset rather than the default.
+ * <dt><tt>-json</tt>
+ * <dd>Write a JSON object per file rather than CSV.
+ * <dt><tt>-summary</tt>
+ * <dd>Write only the sizes for each file, not its frequency table.
+ * <dt><tt>-limit</tt> <i>n</i>
+ * <dd>Limit the codes to n bits.
+ * <dt><tt>-jobs</tt> <i>n</i>
+ * <dd>Process at most n files at once; the default is four per processor.
+ * <dt><tt>-cache</tt> <i>directory</i>
+ * <dd>Keep the trees built in the given directory, and reuse those built
+ *     by earlier runs.
+ * <dt><tt>-o</tt> <i>file</i>
+ * <dd>Write to the given file rather than to standard output.
+ * </dl>
+ * Each file is read and its tree built on its own virtual thread, so that
+ * threads waiting for the file system do not hold up the processors.  The
+ * results are written in the order in which the files are found.  A file
+ * that cannot be read is reported on standard error, and the others are
+ * still processed.  Trees are taken from a TreeCache, so files having the
+ * same counts share one tree.  Once all are done, the number of files,
+ * throughput and peak heap size, and the use of the cache, are reported on
+ * standard error.  The exit status is 0 if every file was processed, 1 if
+ * some could not be, and 2 if the command line is invalid.
+ */
+public class BatchDriver {
+
+  /**
+   * The description of the command line.
+   */
+  private static final String USAGE =
+    "Usage: java edu.ksu.cis.huffmanCodes.BatchDriver [-bytes] "
+    + "[-charset name] [-json]\n"
+    + "         [-summary] [-limit n] [-jobs n] [-cache directory] "
+    + "[-o file] path ...";
+
+  /**
+   * The maximum estimated size of the trees cached in memory, in bytes.
+   */
+  private static final long CACHE_SIZE = 64L << 20;
+
+  /**
+   * Indicates whether bytes are counted rather than characters.
+   */
+  private boolean bytes;
+
+  /**
+   * The Charset used to decode the files.
+   */
+  private Charset charset = Charset.defaultCharset();
+
+  /**
+   * Indicates whether JSON is written rather than CSV.
+   */
+  private boolean json;
+
+  /**
+   * Indicates whether only the sizes are written.
+   */
+  private boolean summary;
+
+  /**
+   * The maximum code length, or 0 if there is none.
+   */
+  private int lengthLimit;
+
+  /**
+   * The maximum number of files processed at once.
+   */
+  private int jobs = 4 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The cache from which trees are taken.
+   */
+  private TreeCache cache = new TreeCache(CACHE_SIZE);
+
+  /**
+   * The destination of the results.
+   */
+  private Writer out;
+
+  /**
+   * The files submitted but not yet written, in order.
+   */
+  private ArrayDeque<Job> pending = new ArrayDeque<>();
+
+  /**
+   * The number of files processed.
+   */
+  private long files;
+
+  /**
+   * The number of files that could not be processed.
+   */
+  private long failures;
+
+  /**
+   * The total size of the files processed, in bytes.
+   */
+  private long size;
+
+  /**
+   * Runs the program.
+   */
+  public static void main(String[] args) {
+    BatchDriver d = new BatchDriver();
+    String output = null;
+    String cacheDir = null;
+    int i = 0;
+    try {
+      for (; i < args.length && args[i].startsWith("-"); i++) {
+	switch (args[i]) {
+	case "-bytes":
+	  d.bytes = true;
+	  break;
+	case "-charset":
+	  d.charset = Charset.forName(args[++i]);
+	  break;
+	case "-json":
+	  d.json = true;
+	  break;
+	case "-summary":
+	  d.summary = true;
+	  break;
+	case "-limit":
+	  d.lengthLimit = Integer.parseInt(args[++i]);
+	  if (d.lengthLimit <= 0) throw new IllegalArgumentException();
+	  break;
+	case "-jobs":
+	  d.jobs = Integer.parseInt(args[++i]);
+	  if (d.jobs <= 0) throw new IllegalArgumentException();
+	  break;
+	case "-cache":
+	  cacheDir = args[++i];
+	  break;
+	case "-o":
+	  output = args[++i];
+	  break;
+	default:
+	  throw new IllegalArgumentException();
+	}
+      }
+    }
+    catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      // Includes NumberFormatException and IllegalCharsetNameException.
+      i = args.length;
+    }
+    if (i == args.length) {
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    try {
+      if (cacheDir != null)
+	d.cache = new TreeCache(CACHE_SIZE, Paths.get(cacheDir));
+      d.out = new BufferedWriter
+	(output == null ? new OutputStreamWriter(System.out,
+						 StandardCharsets.UTF_8)
+	 : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8));
+      long start = System.nanoTime();
+      d.run(args, i);
+      d.report(System.nanoTime() - start);
+    }
+    catch (IOException e) {
+      System.err.println("I/O error: " + e.getMessage());
+      System.exit(1);
+    }
+    catch (InterruptedException e) {
+      System.exit(1);
+    }
+    System.exit(d.failures > 0 ? 1 : 0);
+  }
+
+  /**
+   * Processes the files and directories named by the given arguments,
+   * beginning at index i.
+   * @throws IOException           If the results cannot be written.
+   * @throws InterruptedException  If the thread is interrupted.
+   */
+  private void run(String[] args, int i)
+    throws IOException, InterruptedException {
+    out.write(getHeading());
+    try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (; i < args.length; i++) {
+	Path root = Paths.get(args[i]);
+	Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+	    public FileVisitResult visitFile(Path p, BasicFileAttributes a)
+	      throws IOException {
+	      if (a.isRegularFile()) {
+		while (pending.size() >= jobs) writeNext();
+		Future<String> f = pool.submit(() -> analyze(p));
+		pending.add(new Job(p, a.size(), f));
+	      }
+	      return FileVisitResult.CONTINUE;
+	    }
+
+	    public FileVisitResult visitFileFailed(Path p, IOException e) {
+	      fail(p, e);
+	      return FileVisitResult.CONTINUE;
+	    }
+
+	    public FileVisitResult postVisitDirectory(Path p, IOException e) {
+	      if (e != null) fail(p, e);
+	      return FileVisitResult.CONTINUE;
+	    }
+	  });
+      }
+      while (!pending.isEmpty()) writeNext();
+    }
+    catch (InterruptedIOException e) {
+      throw new InterruptedException(e.getMessage());
+    }
+    out.flush();
+  }
+
+  /**
+   * Waits for the first pending file to be processed and writes its
+   * results.
+   * @throws InterruptedIOException  If the thread is interrupted.
+   * @throws IOException             If the results cannot be written.
+   */
+  private void writeNext() throws IOException {
+    Job j = pending.remove();
+    try {
+      out.write(j.result.get());
+      files++;
+      size += j.size;
+    }
+    catch (ExecutionException e) {
+      fail(j.file, e.getCause());
+    }
+    catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted");
+    }
+  }
+
+  /**
+   * Reports that the given file could not be processed.
+   */
+  private void fail(Path p, Throwable e) {
+    failures++;
+    String message;
+    if (e instanceof NoSuchFileException) message = "No such file";
+    else if (e instanceof AccessDeniedException) message = "Access denied";
+    else if (e instanceof OutOfMemoryError) message = "File too large";
+    else if (e.getMessage() == null) message = e.toString();
+    else message = e.getMessage();
+    System.err.println(p + ": " + message);
+  }
+
+  /**
+   * Builds a Huffman tree for the given file, returning the results to be
+   * written.  This method is called on its own thread.
+   * @throws IOException  If the file cannot be read.
+   */
+  private String analyze(Path p) throws IOException {
+    FrequencyCounter counter = new FrequencyCounter(bytes);
+    if (bytes) {
+      try (InputStream in = Files.newInputStream(p)) {
+	counter.add(in);
+      }
+    }
+    else counter.add(p, charset);
+    HuffmanTree t = cache.get(counter, lengthLimit);
+    return json ? toJson(p, t) : toCsv(p, t);
+  }
+
+  /**
+   * Returns the first line of the output: the names of the CSV columns,
+   * or nothing for JSON.
+   */
+  private String getHeading() {
+    if (json) return "";
+    else if (summary) return "file,symbols,length,encoded_bits,"
+			+ "bits_per_symbol,max_code_length\n";
+    else return "file,symbol,count,code_length,code\n";
+  }
+
+  /**
+   * Returns the results for the given file and tree as CSV.  Each symbol is
+   * given as its numeric value.
+   */
+  private String toCsv(Path p, HuffmanTree t) {
+    StringBuilder sb = new StringBuilder();
+    String file = csvField(p.toString());
+    if (summary) {
+      sb.append(file).append(',').append(t.getSymbolCount()).append(',');
+      sb.append(t.getWeight()).append(',').append(t.getEncodedLength());
+      sb.append(',').append(getBitsPerSymbol(t)).append(',');
+      sb.append(t.getMaxCodeLength()).append('\n');
+    }
+    else {
+      for (FrequencyTableEntry e : t.getFrequencyTable()) {
+	String code = e.getEncoding();
+	sb.append(file).append(',').append((int) e.getCharacter().charValue());
+	sb.append(',').append(e.getLongCount());
+	sb.append(',').append(code.length());
+	sb.append(',').append(code).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the results for the given file and tree as a line of JSON.
+   * Each symbol is given as its numeric value.
+   */
+  private String toJson(Path p, HuffmanTree t) {
+    StringBuilder sb = new StringBuilder("{\"file\":");
+    sb.append(jsonString(p.toString()));
+    sb.append(",\"symbols\":").append(t.getSymbolCount());
+    sb.append(",\"length\":").append(t.getWeight());
+    sb.append(",\"encoded_bits\":").append(t.getEncodedLength());
+    sb.append(",\"bits_per_symbol\":").append(getBitsPerSymbol(t));
+    sb.append(",\"max_code_length\":").append(t.getMaxCodeLength());
+    if (!summary) {
+      sb.append(",\"table\":[");
+      FrequencyTableEntry[] table = t.getFrequencyTable();
+      for (int i = 0; i < table.length; i++) {
+	FrequencyTableEntry e = table[i];
+	String code = e.getEncoding();
+	if (i > 0) sb.append(',');
+	sb.append("{\"symbol\":").append((int) e.getCharacter().charValue());
+	sb.append(",\"count\":").append(e.getLongCount());
+	sb.append(",\"code_length\":").append(code.length());
+	sb.append(",\"code\":\"").append(code).append("\"}");
+      }
+      sb.append(']');
+    }
+    return sb.append("}\n").toString();
+  }
+
+  /**
+   * Returns the average number of bits per symbol of the encoding given by
+   * the given tree, or 0 if the tree is empty.
+   */
+  private static String getBitsPerSymbol(HuffmanTree t) {
+    long n = t.getWeight();
+    double bits = n == 0 ? 0 : (double) t.getEncodedLength() / n;
+    return String.format(Locale.ROOT, "%.4f", bits);
+  }
+
+  /**
+   * Returns the given text as a CSV field, quoted if necessary.
+   */
+  private static String csvField(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0
+	&& s.indexOf('\r') < 0) return s;
+    else return '"' + s.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Returns the given text as a JSON string.
+   */
+  private static String jsonString(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') sb.append('\\').append(c);
+      else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+      else sb.append(c);
+    }
+    return sb.append('"').toString();
+  }
+
+  /**
+   * Reports the number of files processed, the throughput and the peak
+   * heap size on standard error.
+   * @param time  The elapsed time, in nanoseconds.
+   */
+  private void report(long time) {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP)
+	peak += pool.getPeakUsage().getUsed();
+    }
+    double seconds = time / 1e9;
+    System.err.printf(Locale.ROOT, "%d files (%d failed), %.1f MB in %.2f s: "
+		      + "%.1f files/s, %.1f MB/s; peak heap %.1f MB%n",
+		      files, failures, size / 1e6, seconds, files / seconds,
+		      size / 1e6 / seconds, peak / 1e6);
+    System.err.println("Tree cache: " + cache);
+  }
+
+  /**
+   * A file submitted for processing.
+   */
+  private static class Job {
+
+    /**
+     * The file.
+     */
+    private Path file;
+
+    /**
+     * The size of the file, in bytes.
+     */
+    private long size;
+
+    /**
+     * The results to be written.
+     */
+    private Future<String> result;
+
+    /**
+     * Constructs a Job for the given file, of the given size, whose results
+     * are given by the given Future.
+     */
+    public Job(Path p, long n, Future<String> f) {
+      file = p;
+      size = n;
+      result = f;
+    }
+  }
+}
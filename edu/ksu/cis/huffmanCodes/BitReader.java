@@ -0,0 +1,170 @@
+// File: BitReader.java
+// Reads bits packed into bytes.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads bits packed into bytes, most significant bit first, as written by
+ * a BitWriter.  Up to 64 bits are held in a buffer, so that the next bits
+ * can be examined before they are consumed.  Past the end of the input,
+ * the bits examined are 0s, but they cannot be consumed.
+ */
+public class BitReader {
+
+  /**
+   * The size of the internal buffer used for streams.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * The buffered bits, left-aligned.
+   */
+  private long acc;
+
+  /**
+   * The number of buffered bits.
+   */
+  private int count;
+
+  /**
+   * The bytes being read.
+   */
+  private ByteBuffer buf;
+
+  /**
+   * The stream from which the buffer is refilled, or null.
+   */
+  private InputStream stream;
+
+  /**
+   * Constructs a BitReader reading the bytes remaining in the given 
+   * ByteBuffer.
+   */
+  public BitReader(ByteBuffer b) {
+    buf = b;
+  }
+
+  /**
+   * Constructs a BitReader reading the bytes remaining in the given
+   * ByteBuffer, beginning at the given bit.  The ByteBuffer's position is
+   * moved to the byte containing that bit.
+   * @param b          The bytes.
+   * @param bitOffset  The number of bits to skip, counting from the
+   *                   ByteBuffer's position.
+   * @throws IllegalArgumentException  If bitOffset is negative or lies 
+   *                                   beyond the remaining bytes.
+   */
+  public BitReader(ByteBuffer b, long bitOffset) 
+    throws IllegalArgumentException {
+    if (bitOffset < 0 || bitOffset > 8L * b.remaining())
+      throw new IllegalArgumentException("Bit offset out of range");
+    buf = b;
+    buf.position(buf.position() + (int) (bitOffset >>> 3));
+    int n = (int) bitOffset & 7;
+    if (n > 0) {
+      acc = ((long) (buf.get() & 0xff) << 56) << n;
+      count = 8 - n;
+    }
+  }
+
+  /**
+   * Constructs a BitReader reading from the given InputStream.
+   */
+  public BitReader(InputStream in) {
+    buf = ByteBuffer.allocate(BUFFER_SIZE);
+    buf.limit(0);
+    stream = in;
+  }
+
+  /**
+   * Returns the next n bits, without consuming them, as the low-order bits
+   * of the result.
+   * @param n  The number of bits, from 1 to 56.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public long peek(int n) throws IOException {
+    if (count < n) fill();
+    return acc >>> (64 - n);
+  }
+
+  /**
+   * Consumes the next n bits.
+   * @param n  The number of bits, from 0 to 56.
+   * @throws EOFException  If fewer than n bits remain.
+   * @throws IOException   If an I/O error occurs.
+   */
+  public void skip(int n) throws IOException {
+    if (count < n) {
+      fill();
+      if (count < n) throw new EOFException("Unexpected end of input");
+    }
+    acc <<= n;
+    count -= n;
+  }
+
+  /**
+   * Reads the next n bits, returning them as the low-order bits of the
+   * result.
+   * @param n  The number of bits, from 1 to 56.
+   * @throws EOFException  If fewer than n bits remain.
+   * @throws IOException   If an I/O error occurs.
+   */
+  public long read(int n) throws IOException {
+    long bits = peek(n);
+    skip(n);
+    return bits;
+  }
+
+  /**
+   * Reads the next bit.
+   * @throws EOFException  If no bits remain.
+   * @throws IOException   If an I/O error occurs.
+   */
+  public int readBit() throws IOException {
+    return (int) read(1);
+  }
+
+  /**
+   * Discards the remaining bits of the current byte.
+   */
+  public void alignToByte() {
+    int n = count & 7;
+    acc <<= n;
+    count -= n;
+  }
+
+  /**
+   * Fills the buffer with as many bytes as will fit or remain.  When at
+   * least eight bytes remain, they are read at once; any bits of them that
+   * do not fit are left in the low-order bits of the buffer, where they
+   * will be combined with copies of themselves by the next fill.
+   */
+  private void fill() throws IOException {
+    if (buf.remaining() >= 8) {
+      long v = buf.getLong(buf.position());
+      if (buf.order() != ByteOrder.BIG_ENDIAN) v = Long.reverseBytes(v);
+      acc |= v >>> count;
+      int bytes = (64 - count) >>> 3;
+      buf.position(buf.position() + bytes);
+      count += bytes << 3;
+      return;
+    }
+    while (count <= 56) {
+      if (!buf.hasRemaining()) {
+	if (stream == null) return;
+	int n = stream.read(buf.array(), 0, buf.capacity());
+	if (n <= 0) return;
+	buf.position(0);
+	buf.limit(n);
+      }
+      acc |= (long) (buf.get() & 0xff) << (56 - count);
+      count += 8;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+// File: BitWriter.java
+// Packs bits into bytes.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+
+/**
+ * Packs bits into bytes, most significant bit first.  Bits are collected in
+ * a 64-bit accumulator, which is written eight bytes at a time either
+ * directly to a ByteBuffer or, through an internal buffer, to an
+ * OutputStream or WritableByteChannel.  The last byte is padded with 0s
+ * when the BitWriter is finished.
+ */
+public class BitWriter {
+
+  /**
+   * The size of the internal buffer used for streams and channels.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * The pending bits, left-aligned.
+   */
+  private long acc;
+
+  /**
+   * The number of pending bits; always less than 64.
+   */
+  private int count;
+
+  /**
+   * The total number of bits written.
+   */
+  private long bitCount;
+
+  /**
+   * The buffer receiving the bytes.
+   */
+  private ByteBuffer buf;
+
+  /**
+   * The stream to which the buffer is drained, or null.
+   */
+  private OutputStream stream;
+
+  /**
+   * The channel to which the buffer is drained, or null.
+   */
+  private WritableByteChannel channel;
+
+  /**
+   * Constructs a BitWriter writing directly into the given ByteBuffer.
+   * If the ByteBuffer fills up, a BufferOverflowException is thrown.
+   */
+  public BitWriter(ByteBuffer b) {
+    buf = b;
+  }
+
+  /**
+   * Constructs a BitWriter writing to the given OutputStream.
+   */
+  public BitWriter(OutputStream out) {
+    buf = ByteBuffer.allocate(BUFFER_SIZE);
+    stream = out;
+  }
+
+  /**
+   * Constructs a BitWriter writing to the given WritableByteChannel.
+   */
+  public BitWriter(WritableByteChannel out) {
+    buf = ByteBuffer.allocate(BUFFER_SIZE);
+    channel = out;
+  }
+
+  /**
+   * Writes the low-order len bits of the given value, most significant
+   * first.  The remaining bits of the value must be 0.
+   * @param bits  The bits.
+   * @param len   The number of bits, from 0 to 64.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void write(long bits, int len) throws IOException {
+    int free = 64 - count;
+    if (len < free) {
+      acc |= bits << (free - len);
+      count += len;
+    }
+    else {
+      int rest = len - free;
+      putLong(acc | (bits >>> rest));
+      acc = rest == 0 ? 0 : bits << (64 - rest);
+      count = rest;
+    }
+    bitCount += len;
+  }
+
+  /**
+   * Writes the first len bits of the given BitSet, starting at index 0.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void write(BitSet bits, int len) throws IOException {
+    for (int k = 0; k < len; k++) write(bits.get(k) ? 1 : 0, 1);
+  }
+
+  /**
+   * Returns the number of bits written so far, not counting padding.
+   */
+  public long getBitCount() {
+    return bitCount;
+  }
+
+  /**
+   * Writes any pending bits, padding the last byte with 0s, and drains the
+   * internal buffer, if any.  Further bits written begin a new byte.
+   * Streams and channels are not closed.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void finish() throws IOException {
+    int bytes = (count + 7) >>> 3;
+    for (int k = 0; k < bytes; k++) {
+      if (!buf.hasRemaining()) drain();
+      buf.put((byte) (acc >>> (56 - 8*k)));
+    }
+    acc = 0;
+    count = 0;
+    if (stream != null || channel != null) drain();
+    if (stream != null) stream.flush();
+  }
+
+  /**
+   * Writes eight bytes.
+   */
+  private void putLong(long v) throws IOException {
+    if (buf.remaining() < 8) drain();
+    if (buf.order() == ByteOrder.BIG_ENDIAN) buf.putLong(v);
+    else buf.putLong(Long.reverseBytes(v));
+  }
+
+  /**
+   * Drains the internal buffer to the stream or channel.  If there is no
+   * internal buffer, nothing is done, so the caller's ByteBuffer overflows.
+   */
+  private void drain() throws IOException {
+    if (stream != null) {
+      stream.write(buf.array(), 0, buf.position());
+      buf.clear();
+    }
+    else if (channel != null) {
+      buf.flip();
+      while (buf.hasRemaining()) channel.write(buf);
+      buf.clear();
+    }
+  }
+}
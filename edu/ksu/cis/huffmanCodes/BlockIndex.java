@@ -0,0 +1,194 @@
+// File: BlockIndex.java
+// Locates the blocks of an encoding produced by a ParallelEncoder.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Locates the blocks of an encoding produced by a ParallelEncoder.  For
+ * each block, the index gives the offset of its first symbol in the
+ * unencoded input and the offset of its first bit in the encoding, so that
+ * any block can be decoded without decoding the blocks preceding it.  A
+ * BlockIndex can be stored with write and recovered with read, so that the
+ * encoding can be decoded by another program.
+ */
+public class BlockIndex {
+
+  /**
+   * The version of the format written by write.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  /**
+   * The number of blocks whose offsets read reads at once.
+   */
+  private static final int READ_CHUNK = 4096;
+
+  /**
+   * The offset of the first symbol of each block, followed by the total
+   * number of symbols.
+   */
+  private long[] symbolOffsets;
+
+  /**
+   * The offset of the first bit of each block, followed by the total
+   * number of bits.
+   */
+  private long[] bitOffsets;
+
+  /**
+   * Constructs a BlockIndex from the given offsets, each of which has one
+   * more element than there are blocks.  The arrays are not copied.
+   * @param symbols  The symbol offsets, followed by the number of symbols.
+   * @param bits     The bit offsets, followed by the number of bits.
+   */
+  BlockIndex(long[] symbols, long[] bits) {
+    symbolOffsets = symbols;
+    bitOffsets = bits;
+  }
+
+  /**
+   * Returns the number of blocks.
+   */
+  public int getBlockCount() {
+    return symbolOffsets.length - 1;
+  }
+
+  /**
+   * Returns the total number of symbols encoded.
+   */
+  public long getSymbolCount() {
+    return symbolOffsets[symbolOffsets.length - 1];
+  }
+
+  /**
+   * Returns the total number of bits in the encoding, not counting the
+   * padding of the last byte.
+   */
+  public long getBitCount() {
+    return bitOffsets[bitOffsets.length - 1];
+  }
+
+  /**
+   * Returns the number of bytes in the encoding.
+   */
+  public long getByteCount() {
+    return (getBitCount() + 7) >>> 3;
+  }
+
+  /**
+   * Returns the offset of the first symbol of the given block.
+   */
+  public long getSymbolOffset(int block) {
+    return symbolOffsets[block];
+  }
+
+  /**
+   * Returns the number of symbols in the given block.
+   */
+  public int getBlockLength(int block) {
+    return (int) (symbolOffsets[block + 1] - symbolOffsets[block]);
+  }
+
+  /**
+   * Returns the offset of the first bit of the given block.
+   */
+  public long getBitOffset(int block) {
+    return bitOffsets[block];
+  }
+
+  /**
+   * Returns the block containing the symbol at the given offset.
+   * @throws IndexOutOfBoundsException  If there is no such symbol.
+   */
+  public int findBlock(long symbol) throws IndexOutOfBoundsException {
+    if (symbol < 0 || symbol >= getSymbolCount())
+      throw new IndexOutOfBoundsException("No symbol at " + symbol);
+    int i = Arrays.binarySearch(symbolOffsets, symbol);
+    if (i >= 0) {
+      // Skip any empty blocks beginning at the same symbol.
+      while (symbolOffsets[i + 1] == symbol) i++;
+      return i;
+    }
+    return -i - 2;
+  }
+
+  /**
+   * Returns a BitReader positioned at the beginning of the given block.
+   * @param encoded  The encoding, beginning at its position.  A duplicate
+   *                 is read, so its position is not changed.
+   * @param block    The block.
+   */
+  public BitReader getReader(ByteBuffer encoded, int block) {
+    return new BitReader(encoded.duplicate(), bitOffsets[block]);
+  }
+
+  /**
+   * Writes this BlockIndex to the given DataOutput in a form that read can
+   * read.  The format is:
+   * <ul>
+   * <li>the byte FORMAT_VERSION;
+   * <li>the number of blocks n, as an int;
+   * <li>for each of the n + 1 block boundaries, the symbol offset and then
+   *     the bit offset, each as a long.  The last boundary gives the total
+   *     numbers of symbols and bits.
+   * </ul>
+   * Because the offsets have a fixed size, the entry for any block can be
+   * found without reading those preceding it.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void write(DataOutput out) throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(5 + 16 * symbolOffsets.length);
+    b.put((byte) FORMAT_VERSION);
+    b.putInt(getBlockCount());
+    for (int i = 0; i < symbolOffsets.length; i++) {
+      b.putLong(symbolOffsets[i]);
+      b.putLong(bitOffsets[i]);
+    }
+    out.write(b.array(), 0, b.position());
+  }
+
+  /**
+   * Reads a BlockIndex written by write from the given DataInput.
+   * @throws IOException  If an I/O error occurs, or if the data were not
+   *                      written by write in a supported version.
+   */
+  public static BlockIndex read(DataInput in) throws IOException {
+    int version = in.readUnsignedByte();
+    if (version != FORMAT_VERSION)
+      throw new IOException("Unsupported format version: " + version);
+    int n = in.readInt();
+    if (n < 0 || n == Integer.MAX_VALUE) 
+      throw new IOException("Bad block count: " + n);
+    // The arrays grow as the offsets are read, so that a bad count in a
+    // short input does not allocate much memory.
+    long[] symbols = new long[Math.min(n + 1, READ_CHUNK)];
+    long[] bits = new long[symbols.length];
+    byte[] data = new byte[16 * symbols.length];
+    for (int i = 0; i <= n; ) {
+      int k = Math.min(n + 1 - i, READ_CHUNK);
+      if (i + k > symbols.length) {
+	int size = (int) Math.min(n + 1L, 2L * symbols.length);
+	symbols = Arrays.copyOf(symbols, size);
+	bits = Arrays.copyOf(bits, size);
+      }
+      in.readFully(data, 0, 16 * k);
+      ByteBuffer b = ByteBuffer.wrap(data);
+      for (int j = 0; j < k; j++, i++) {
+	symbols[i] = b.getLong();
+	bits[i] = b.getLong();
+	long previous = i == 0 ? 0 : symbols[i - 1];
+	if (symbols[i] < previous || bits[i] < (i == 0 ? 0 : bits[i - 1])
+	    || symbols[i] - previous > Integer.MAX_VALUE
+	    || (i == 0 && (symbols[0] != 0 || bits[0] != 0)))
+	  throw new IOException("Bad offsets for block " + i);
+      }
+    }
+    return new BlockIndex(symbols, bits);
+  }
+}
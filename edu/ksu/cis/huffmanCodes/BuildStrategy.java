@@ -0,0 +1,25 @@
+// File: BuildStrategy.java
+// The ways in which a Huffman tree can be constructed.
+
+package edu.ksu.cis.huffmanCodes;
+
+/**
+ * The ways in which a HuffmanTree can be constructed.  Each strategy
+ * breaks ties between equal weights in the same way, so all of them
+ * produce the same tree, and hence the same codes, for the same counts.
+ */
+public enum BuildStrategy {
+
+  /**
+   * Repeatedly merges the two lightest trees, found using a binary heap.
+   * This takes O(n log n) time for an alphabet of n symbols.
+   */
+  HEAP,
+
+  /**
+   * Sorts the leaves by weight using a radix sort, then merges them using
+   * two FIFO queues, one of leaves and one of merged trees.  This takes 
+   * O(n) time once the leaves are sorted.
+   */
+  TWO_QUEUE
+}
@@ -9,18 +9,20 @@ import java.awt.Button;
 import java.awt.Container;
 import java.io.File;
 import javax.swing.filechooser.FileFilter;
-import java.io.FileReader;
 import java.awt.FlowLayout;
 import java.awt.FileDialog;
 import java.io.FileInputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.event.WindowAdapter;
@@ -36,6 +38,27 @@ public class Driver extends JPanel {
    */
   JTextField text = new JTextField(15);
 
+  /**
+   * The check box indicating whether files are to be read as binary.
+   */
+  JCheckBox binaryBox = new JCheckBox("Binary");
+
+  /**
+   * The text field giving the maximum code length, if any.
+   */
+  JTextField limitField = new JTextField(3);
+
+  /**
+   * The cache of the trees built, so that an input analyzed again is not
+   * rebuilt.
+   */
+  private transient TreeCache cache = new TreeCache(CACHE_SIZE);
+
+  /**
+   * The maximum estimated size of the trees cached, in bytes.
+   */
+  private static final long CACHE_SIZE = 64L << 20;
+
   /**
    * Used for consistency in serialization.
    */
@@ -58,18 +81,53 @@ public class Driver extends JPanel {
     Button btn = new Button("Choose File");
     btn.addActionListener(new FileOpenListener(this, f));
     add(btn);
+    add(binaryBox);
+    add(new JLabel("Max. Code Length: "));
+    add(limitField);
   }
 
   /**
    * Starts the program as an application.
    */
   public static void main(String[] args) {
-    JFrame f = new JFrame();
-    f.setContentPane(new Driver(f));
-    f.addWindowListener(new Terminator());
-    f.setTitle("Huffman Codes");
-    f.pack();
-    f.setVisible(true);
+    SwingUtilities.invokeLater(() -> {
+	JFrame f = new JFrame();
+	f.setContentPane(new Driver(f));
+	f.addWindowListener(new Terminator());
+	f.setTitle("Huffman Codes");
+	f.pack();
+	f.setVisible(true);
+      });
+  }
+
+  /**
+   * Returns <tt>true</tt> if chosen files are to be analyzed as bytes
+   * rather than as text.
+   */
+  public boolean isBinarySelected() {
+    return binaryBox.isSelected();
+  }
+
+  /**
+   * Returns the maximum code length given by the user, or 0 if none was
+   * given.
+   * @throws NumberFormatException  If the maximum code length is not a
+   *                                positive number.
+   */
+  public int getLengthLimit() throws NumberFormatException {
+    String s = limitField.getText().trim();
+    if (s.length() == 0) return 0;
+    int limit = Integer.parseInt(s);
+    if (limit < 1) 
+      throw new NumberFormatException("Code length must be positive: " + s);
+    return limit;
+  }
+
+  /**
+   * Returns the cache of the trees built.
+   */
+  public TreeCache getTreeCache() {
+    return cache;
   }
 
   /**
@@ -103,10 +161,15 @@ class TextEntryListener implements ActionListener {
    * Handles the event.
    */
   public void actionPerformed(ActionEvent e) {
-    String s = theDriver.getInputString();
-    HuffmanFrame f = new HuffmanFrame(new HuffmanTree(s));
-    f.setTitle("Huffman Tree");
-    f.setVisible(true);
+    try {
+      int limit = theDriver.getLengthLimit();
+      new TreeBuilder(theDriver, theDriver.getInputString(), limit).start();
+    }
+    catch (NumberFormatException ex) {
+      JOptionPane.showMessageDialog(theDriver, ex.getMessage(),
+				    "Invalid Code Length", 
+				    JOptionPane.WARNING_MESSAGE);
+    }
   }
 }
 
@@ -150,24 +213,18 @@ class FileOpenListener implements ActionListener {
    * Handles the event.  The parameter is ignored.
    */
   public void actionPerformed(ActionEvent e) {
-    InputStreamReader in;
     try {
-      in = getInputStreamReader(); 
-      if (in != null) { // If a file was selected
-	StringBuffer sb = new StringBuffer();
-	int c = in.read();
-	while (c != -1) {
-	  sb.append((char) c);
-	  c = in.read();
-	}
-	HuffmanFrame f = new HuffmanFrame(new HuffmanTree(sb.toString()));
-	f.setTitle("Huffman Tree");
-	f.setVisible(true);
+      int limit = theDriver.getLengthLimit();
+      Path p = getFilePath(); 
+      if (p != null) { // If a file was selected
+	new TreeBuilder(theDriver, p, theDriver.isBinarySelected(), limit)
+	  .start();
       }
     }
-    catch (IOException ex) { 
-      JOptionPane.showMessageDialog(theDriver, ex.getMessage(), 
-				    "I/O Error", JOptionPane.WARNING_MESSAGE);
+    catch (NumberFormatException ex) {
+      JOptionPane.showMessageDialog(theDriver, ex.getMessage(),
+				    "Invalid Code Length", 
+				    JOptionPane.WARNING_MESSAGE);
     }
     catch (SecurityException ex) {
       JOptionPane.showMessageDialog(theDriver,
@@ -175,31 +232,22 @@ class FileOpenListener implements ActionListener {
 				    "Security Error",
 				    JOptionPane.WARNING_MESSAGE);
     }
-    catch (NoClassDefFoundError ex) {
-      JOptionPane.showMessageDialog(theDriver,
-				    "Package EDU.ksu.cis.viewer not found.",
-				    "Load Error", JOptionPane.WARNING_MESSAGE);
-    }
   }
 
   /**
-   * Gets an InputStreamReader associated with a file chosen by the user.
-   * This method uses a JFileChooser to obtain the file.  If no file is
-   * chosen, the method returns null.
-   * @throws SecurityException  If read access to the file or file system is
-   *                            denied.
-   * @throws IOException        If the file cannot be opened.
+   * Gets the Path of a file chosen by the user.  This method uses a 
+   * FileDialog to obtain the file.  If no file is chosen, the method returns
+   * null.
+   * @throws SecurityException  If read access to the file system is denied.
    */
-  private InputStreamReader getInputStreamReader() 
-    throws SecurityException, IOException {
+  private Path getFilePath() throws SecurityException {
     FileDialog fileChooser = new FileDialog(theFrame, "Open file",
 					    FileDialog.LOAD);
     fileChooser.setVisible(true);
     String fn = fileChooser.getFile();
     if (fn != null) {
-      return new FileReader(fn);
+      return new File(fileChooser.getDirectory(), fn).toPath();
     }
     else return null;
   }
 }
-
@@ -0,0 +1,247 @@
+// File: FrequencyCounter.java
+// A histogram of the characters or bytes in some input.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A histogram of the characters in some input.  The counts are kept in a
+ * dense array indexed by UTF-16 code unit, so counting allocates nothing
+ * beyond the histogram itself, regardless of the length of the input.
+ * A FrequencyCounter may instead be constructed over the 256-symbol byte
+ * alphabet, for counting binary input without decoding it.
+ */
+public class FrequencyCounter {
+
+  /**
+   * The number of distinct UTF-16 code units.
+   */
+  public static final int CHAR_ALPHABET_SIZE = 0x10000;
+
+  /**
+   * The number of distinct byte values.
+   */
+  public static final int BYTE_ALPHABET_SIZE = 0x100;
+
+  /**
+   * The number of chars decoded per read when counting from a stream.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * The counts, indexed by code unit or byte value.
+   */
+  private long[] counts;
+
+  /**
+   * Constructs an empty FrequencyCounter for UTF-16 code units.
+   */
+  public FrequencyCounter() {
+    this(false);
+  }
+
+  /**
+   * Constructs an empty FrequencyCounter.
+   * @param bytes  If <tt>true</tt>, the alphabet consists of the 256 byte
+   *               values; otherwise, it consists of UTF-16 code units.
+   */
+  public FrequencyCounter(boolean bytes) {
+    counts = new long[bytes ? BYTE_ALPHABET_SIZE : CHAR_ALPHABET_SIZE];
+  }
+
+  /**
+   * Returns <tt>true</tt> if the alphabet consists of byte values.
+   */
+  public boolean isByteAlphabet() {
+    return counts.length == BYTE_ALPHABET_SIZE;
+  }
+
+  /**
+   * Counts the characters in the given CharSequence.
+   * @throws IllegalArgumentException  If this FrequencyCounter counts bytes
+   *                                   and a character is not in the range
+   *                                   0-255, in which case nothing is
+   *                                   counted.
+   */
+  public void add(CharSequence s) throws IllegalArgumentException {
+    long[] c = counts;
+    if (c.length == BYTE_ALPHABET_SIZE) {
+      for (int i = 0; i < s.length(); i++) checkByte(s.charAt(i));
+    }
+    if (s instanceof String) {
+      String str = (String) s;
+      for (int i = 0; i < str.length(); i++) c[str.charAt(i)]++;
+    }
+    else {
+      for (int i = 0; i < s.length(); i++) c[s.charAt(i)]++;
+    }
+  }
+
+  /**
+   * Counts the characters in the given portion of a char array.
+   * @param buf  The characters.
+   * @param off  The index of the first character to count.
+   * @param len  The number of characters to count.
+   * @throws IllegalArgumentException  If this FrequencyCounter counts bytes
+   *                                   and a character is not in the range
+   *                                   0-255, in which case nothing is
+   *                                   counted.
+   */
+  public void add(char[] buf, int off, int len) 
+    throws IllegalArgumentException {
+    long[] c = counts;
+    int end = off + len;
+    if (c.length == BYTE_ALPHABET_SIZE) {
+      for (int i = off; i < end; i++) checkByte(buf[i]);
+    }
+    for (int i = off; i < end; i++) c[buf[i]]++;
+  }
+
+  /**
+   * Throws an IllegalArgumentException if the given character is not in
+   * the byte alphabet.
+   */
+  private static void checkByte(char ch) throws IllegalArgumentException {
+    if (ch >= BYTE_ALPHABET_SIZE)
+      throw new IllegalArgumentException("Character " + (int) ch +
+					 " is not a byte value");
+  }
+
+  /**
+   * Counts the bytes in the given portion of a byte array.  If this
+   * FrequencyCounter counts code units, each byte is counted as the code
+   * unit having the same (unsigned) value.
+   * @param buf  The bytes.
+   * @param off  The index of the first byte to count.
+   * @param len  The number of bytes to count.
+   */
+  public void add(byte[] buf, int off, int len) {
+    long[] c = counts;
+    int end = off + len;
+    for (int i = off; i < end; i++) c[buf[i] & 0xff]++;
+  }
+
+  /**
+   * Counts the bytes remaining in the given ByteBuffer, leaving its
+   * position at its limit.
+   */
+  public void add(ByteBuffer b) {
+    if (b.hasArray()) {
+      add(b.array(), b.arrayOffset() + b.position(), b.remaining());
+      b.position(b.limit());
+    }
+    else {
+      byte[] buf = new byte[Math.min(BUFFER_SIZE, b.remaining())];
+      while (b.hasRemaining()) {
+	int n = Math.min(buf.length, b.remaining());
+	b.get(buf, 0, n);
+	add(buf, 0, n);
+      }
+    }
+  }
+
+  /**
+   * Counts the bytes read from the given InputStream until end of stream,
+   * without decoding them.  The InputStream is not closed.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void add(InputStream in) throws IOException {
+    byte[] buf = new byte[BUFFER_SIZE];
+    int n = in.read(buf);
+    while (n != -1) {
+      add(buf, 0, n);
+      n = in.read(buf);
+    }
+  }
+
+  /**
+   * Counts the characters read from the given Reader until end of stream.
+   * The characters are decoded in large chunks and counted directly, so
+   * memory use does not depend on the length of the input.  The Reader is
+   * not closed.
+   * @throws IOException               If an I/O error occurs.
+   * @throws IllegalArgumentException  If this FrequencyCounter counts bytes
+   *                                   and a character read is not in the
+   *                                   range 0-255.
+   */
+  public void add(Reader in) throws IOException, IllegalArgumentException {
+    char[] buf = new char[BUFFER_SIZE];
+    int n = in.read(buf);
+    while (n != -1) {
+      add(buf, 0, n);
+      n = in.read(buf);
+    }
+  }
+
+  /**
+   * Counts the characters decoded from the given InputStream using the
+   * given Charset.  The InputStream is not closed.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void add(InputStream in, Charset cs) throws IOException {
+    add(new InputStreamReader(in, cs));
+  }
+
+  /**
+   * Counts the characters in the given file, decoded using the given
+   * Charset.
+   * @throws IOException  If the file cannot be read.
+   */
+  public void add(Path p, Charset cs) throws IOException {
+    try (InputStream in = Files.newInputStream(p)) {
+      add(in, cs);
+    }
+  }
+
+  /**
+   * Adds the counts in the given FrequencyCounter to this one.
+   * @throws IllegalArgumentException  If the two FrequencyCounters have
+   *                                   different alphabets.
+   */
+  public void add(FrequencyCounter other) 
+    throws IllegalArgumentException {
+    if (other.counts.length != counts.length)
+      throw new IllegalArgumentException("Alphabets differ");
+    long[] c = counts;
+    long[] d = other.counts;
+    for (int i = 0; i < c.length; i++) c[i] += d[i];
+  }
+
+  /**
+   * Returns the number of occurrences counted for the given code unit or
+   * byte value.
+   */
+  public long getCount(int symbol) {
+    return counts[symbol];
+  }
+
+  /**
+   * Returns the number of distinct code units or byte values counted.
+   */
+  public int getDistinctCount() {
+    int n = 0;
+    for (int i = 0; i < counts.length; i++)
+      if (counts[i] != 0) n++;
+    return n;
+  }
+
+  /**
+   * Returns the code units or byte values having nonzero counts, in
+   * ascending order.
+   */
+  public int[] getSymbols() {
+    int[] symbols = new int[getDistinctCount()];
+    int j = 0;
+    for (int i = 0; i < counts.length; i++)
+      if (counts[i] != 0) symbols[j++] = i;
+    return symbols;
+  }
+}
@@ -0,0 +1,255 @@
+// File: FrequencyModel.java
+// A histogram that can be edited, with a Huffman tree kept up to date.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of some input that can be edited by adding or removing
+ * text, together with a HuffmanTree for its current counts.  Editing
+ * costs time proportional to the length of the text added or removed,
+ * and rebuilding the tree costs time depending only on the number of
+ * distinct symbols, not on the length of the input.
+ * <p>
+ * The symbols are kept sorted by count, and those whose counts change are
+ * recorded.  To restore the order, the changed symbols are taken out, put
+ * in order among themselves, with an insertion sort if there are only a
+ * few of them and a radix sort otherwise, and merged back in.  This takes
+ * time linear in the number of distinct symbols.  The tree is then built
+ * by merging with two queues.  If the new tree has the same code lengths as the
+ * previous one, the previous tree's shape, codes, encoder and decoder are
+ * kept, and only its counts are replaced, so the codes do not change.
+ */
+public final class FrequencyModel {
+
+  /**
+   * The counts, indexed by code unit or byte value.
+   */
+  private long[] counts;
+
+  /**
+   * The largest number of changed symbols put in order by insertion.
+   */
+  private static final int INSERTION_LIMIT = 16;
+
+  /**
+   * The symbols that had occurred when the tree was last built, sorted by
+   * their counts at that time and then by symbol.
+   */
+  private int[] sorted = new int[0];
+
+  /**
+   * The number of elements of sorted in use.
+   */
+  private int size;
+
+  /**
+   * The symbols whose counts have changed since the tree was last built.
+   */
+  private int[] moved = new int[16];
+
+  /**
+   * The number of elements of moved in use.
+   */
+  private int movedCount;
+
+  /**
+   * Indicates whether each symbol is present in moved.
+   */
+  private boolean[] isMoved;
+
+  /**
+   * The tree for the counts as of the last call to getTree, or null.
+   */
+  private HuffmanTree tree;
+
+  /**
+   * Indicates whether the counts have changed since tree was built.
+   */
+  private boolean changed = true;
+
+  /**
+   * Constructs an empty FrequencyModel for UTF-16 code units.
+   */
+  public FrequencyModel() {
+    this(new FrequencyCounter());
+  }
+
+  /**
+   * Constructs a FrequencyModel holding the counts of the given
+   * FrequencyCounter, and over the same alphabet.
+   */
+  public FrequencyModel(FrequencyCounter counter) {
+    int alphabet = counter.isByteAlphabet()
+      ? FrequencyCounter.BYTE_ALPHABET_SIZE
+      : FrequencyCounter.CHAR_ALPHABET_SIZE;
+    counts = new long[alphabet];
+    isMoved = new boolean[alphabet];
+    for (int sym : counter.getSymbols()) add(sym, counter.getCount(sym));
+  }
+
+  /**
+   * Returns <tt>true</tt> if the alphabet consists of byte values.
+   */
+  public boolean isByteAlphabet() {
+    return counts.length == FrequencyCounter.BYTE_ALPHABET_SIZE;
+  }
+
+  /**
+   * Returns the count of the given symbol.
+   */
+  public long getCount(int sym) {
+    return sym >= 0 && sym < counts.length ? counts[sym] : 0;
+  }
+
+  /**
+   * Adds the characters of the given CharSequence to the counts.
+   * @throws IllegalArgumentException  If this FrequencyModel counts bytes
+   *                                   and a character is not in the range
+   *                                   0-255, in which case nothing is
+   *                                   counted.
+   */
+  public void add(CharSequence s) throws IllegalArgumentException {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(i);
+      if (c >= counts.length)
+	throw new IllegalArgumentException("Character " + (int) c +
+					   " is not a byte value");
+    }
+    for (int i = 0; i < n; i++) add(s.charAt(i), 1);
+  }
+
+  /**
+   * Removes the characters of the given CharSequence from the counts.  If
+   * any character would be removed more times than it has been counted,
+   * nothing is removed.
+   * @throws IllegalArgumentException  If a character has not been counted
+   *                                   as many times as it occurs in s.
+   */
+  public void remove(CharSequence s) throws IllegalArgumentException {
+    int n = s.length();
+    int i = 0;
+    try {
+      for (; i < n; i++) {
+	char c = s.charAt(i);
+	if (c >= counts.length || counts[c] == 0)
+	  throw new IllegalArgumentException("Character not counted: " + c);
+	counts[c]--;
+      }
+    }
+    catch (IllegalArgumentException e) {
+      // Restore the counts already decremented.
+      for (int j = 0; j < i; j++) counts[s.charAt(j)]++;
+      throw e;
+    }
+    for (i = 0; i < n; i++) move(s.charAt(i));
+    changed |= n > 0;
+  }
+
+  /**
+   * Adds n occurrences of the given symbol to the counts.
+   * @throws ArrayIndexOutOfBoundsException  If the symbol is not in the
+   *                                         alphabet.
+   * @throws IllegalArgumentException        If n is negative.
+   */
+  public void add(int sym, long n)
+    throws ArrayIndexOutOfBoundsException, IllegalArgumentException {
+    if (n < 0) throw new IllegalArgumentException("Negative count: " + n);
+    if (n == 0) return;
+    counts[sym] += n;
+    changed = true;
+    move(sym);
+  }
+
+  /**
+   * Records that the count of the given symbol has changed.
+   */
+  private void move(int sym) {
+    if (isMoved[sym]) return;
+    isMoved[sym] = true;
+    if (movedCount == moved.length) 
+      moved = Arrays.copyOf(moved, 2 * movedCount);
+    moved[movedCount++] = sym;
+  }
+
+  /**
+   * Returns a HuffmanTree for the current counts.  If the counts have not
+   * changed since the last call, the same tree is returned.  If the code
+   * lengths of the new tree are the same as those of the last tree, the
+   * new tree has the same codes as the last.
+   */
+  public HuffmanTree getTree() {
+    if (!changed) return tree;
+    restoreOrder();
+    int n = size;
+    // Number the leaves in order of symbol.
+    int[] syms = Arrays.copyOf(sorted, n);
+    Arrays.sort(syms);
+    long[] c = new long[n];
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      c[i] = counts[syms[i]];
+      order[i] = Arrays.binarySearch(syms, sorted[i]);
+    }
+    HuffmanTree t = new HuffmanTree(isByteAlphabet(), syms, c, order);
+    if (tree != null && t.hasSameLengths(tree)) t = new HuffmanTree(tree, c);
+    tree = t;
+    changed = false;
+    return tree;
+  }
+
+  /**
+   * Puts the symbols present in order of count, then of symbol, in sorted.
+   * The symbols that have not moved are still in order, so the moved ones
+   * still present are taken out, put in order, and merged back in.
+   */
+  private void restoreOrder() {
+    int[] changes = new int[movedCount];
+    int m = 0;
+    for (int i = 0; i < movedCount; i++) {
+      int sym = moved[i];
+      if (counts[sym] > 0) changes[m++] = sym;
+    }
+    changes = Arrays.copyOf(changes, m);
+    if (m <= INSERTION_LIMIT) {
+      for (int i = 1; i < m; i++) {
+	int sym = changes[i];
+	int j = i;
+	while (j > 0 && precedes(sym, changes[j - 1])) {
+	  changes[j] = changes[j - 1];
+	  j--;
+	}
+	changes[j] = sym;
+      }
+    }
+    else {
+      // The radix sort is stable, so symbols of equal count stay in order.
+      Arrays.sort(changes);
+      RadixSort.sort(changes, counts);
+    }
+    int[] merged = new int[size + m];
+    int n = 0;
+    int k = 0;
+    for (int i = 0; i < size; i++) {
+      int sym = sorted[i];
+      if (isMoved[sym]) continue;
+      while (k < m && precedes(changes[k], sym)) merged[n++] = changes[k++];
+      merged[n++] = sym;
+    }
+    while (k < m) merged[n++] = changes[k++];
+    sorted = merged;
+    size = n;
+    for (int i = 0; i < movedCount; i++) isMoved[moved[i]] = false;
+    movedCount = 0;
+  }
+
+  /**
+   * Returns <tt>true</tt> if symbol a precedes symbol b in order of count,
+   * then of symbol.
+   */
+  private boolean precedes(int a, int b) {
+    return counts[a] < counts[b] || (counts[a] == counts[b] && a < b);
+  }
+}
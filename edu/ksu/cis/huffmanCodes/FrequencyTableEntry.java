@@ -4,12 +4,19 @@
 package edu.ksu.cis.huffmanCodes;
 
 import java.util.Comparator;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 /**
  * An entry in a frequency table.  The entry contains a Character and an
- * associated int count and String encoding.  Four Comparators are provided
- * for comparisons based on the three fields.
+ * associated long count and String encoding.  Four Comparators are provided
+ * for comparisons based on the three fields.  The length of the encoding,
+ * and its bits if there are at most 63, are kept as primitive keys, so
+ * that entries can be compared without examining the String.
  */
 public class FrequencyTableEntry implements Serializable {
 
@@ -21,25 +28,95 @@ public class FrequencyTableEntry implements Serializable {
   /**
    * The count.
    */
-  private int theCount;
+  private long theCount;
 
   /**
    * The encoding.
    */
   private String theEncoding;
 
+  /**
+   * The length of the encoding.
+   */
+  private transient int theEncodingLength;
+
+  /**
+   * The bits of the encoding, with the first at bit 62, or -1 if the
+   * encoding has more than 63 bits or is not made of '0's and '1's.
+   */
+  private transient long theEncodingKey;
+
   /**
    * Used for consistency in serialization.
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * The serialized fields: the Character, the encoding, the count as an
+   * int, as written before counts were long, and the count itself.  The
+   * int count is the count itself, or Integer.MAX_VALUE if it is larger,
+   * so that earlier versions can still read entries.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("theCharacter", Character.class),
+    new ObjectStreamField("theCount", int.class),
+    new ObjectStreamField("theEncoding", String.class),
+    new ObjectStreamField("theLongCount", long.class)
+  };
+
   /**
    * Constructs a new FrequencyTableEntry containing the given information.
    */
-  public FrequencyTableEntry(Character c, int n, String s) {
+  public FrequencyTableEntry(Character c, long n, String s) {
     theCharacter = c;
     theCount = n;
     theEncoding = s;
+    findKeys();
+  }
+
+  /**
+   * Finds the primitive keys of the encoding.
+   */
+  private void findKeys() {
+    theEncodingLength = theEncoding.length();
+    theEncodingKey = -1;
+    if (theEncodingLength > 63) return;
+    long key = 0;
+    for (int i = 0; i < theEncodingLength; i++) {
+      int bit = theEncoding.charAt(i) - '0';
+      if (bit != 0 && bit != 1) return;
+      key = key << 1 | bit;
+    }
+    theEncodingKey = key << (63 - theEncodingLength);
+  }
+
+  /**
+   * Writes the serialized fields.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    ObjectOutputStream.PutField f = out.putFields();
+    f.put("theCharacter", theCharacter);
+    f.put("theCount", (int) Math.min(theCount, Integer.MAX_VALUE));
+    f.put("theEncoding", theEncoding);
+    f.put("theLongCount", theCount);
+    out.writeFields();
+  }
+
+  /**
+   * Reads the serialized fields, taking the count from the int field if
+   * the entry was written before counts were long, then finds the 
+   * primitive keys.
+   */
+  private void readObject(ObjectInputStream in) 
+    throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField f = in.readFields();
+    theCharacter = (Character) f.get("theCharacter", null);
+    theEncoding = (String) f.get("theEncoding", null);
+    if (f.defaulted("theLongCount")) theCount = f.get("theCount", 0);
+    else theCount = f.get("theLongCount", 0L);
+    if (theEncoding == null) 
+      throw new InvalidObjectException("Missing encoding");
+    findKeys();
   }
 
   /**
@@ -51,8 +128,17 @@ public class FrequencyTableEntry implements Serializable {
 
   /**
    * Returns the count.
+   * @throws ArithmeticException  If the count does not fit in an int; use
+   *                              getLongCount for any count.
+   */
+  public int getCount() throws ArithmeticException {
+    return Math.toIntExact(theCount);
+  }
+
+  /**
+   * Returns the count as a long.
    */
-  public int getCount() {
+  public long getLongCount() {
     return theCount;
   }
 
@@ -63,6 +149,23 @@ public class FrequencyTableEntry implements Serializable {
     return theEncoding;
   }
 
+  /**
+   * Returns the length of the encoding.
+   */
+  int getEncodingLength() {
+    return theEncodingLength;
+  }
+
+  /**
+   * Returns the bits of the encoding, with the first at bit 62; or -1 if
+   * the encoding has more than 63 bits or is not made of '0's and '1's.
+   * Two encodings having keys are in the order of their keys, or if the
+   * keys are equal, in order of length.
+   */
+  long getEncodingKey() {
+    return theEncodingKey;
+  }
+
   /**
    * Returns a Comparator that makes comparisons based on the Character.
    * The Comparator returns a postive number iff the first Character is
@@ -142,7 +245,7 @@ class CountComparator implements Comparator<FrequencyTableEntry> {
    *               </ul>
    */
   public int compare(FrequencyTableEntry obj1, FrequencyTableEntry obj2) {
-    return obj1.getCount() - obj2.getCount();
+    return Long.compare(obj1.getLongCount(), obj2.getLongCount());
   }
 }
 
@@ -165,7 +268,12 @@ class EncodingComparator implements Comparator<FrequencyTableEntry> {
    *               </ul>
    */
   public int compare(FrequencyTableEntry obj1, FrequencyTableEntry obj2) {
-    return obj1.getEncoding().compareTo(obj2.getEncoding());
+    long k1 = obj1.getEncodingKey();
+    long k2 = obj2.getEncodingKey();
+    if (k1 < 0 || k2 < 0) 
+      return obj1.getEncoding().compareTo(obj2.getEncoding());
+    else if (k1 != k2) return Long.compare(k1, k2);
+    else return obj1.getEncodingLength() - obj2.getEncodingLength();
   }
 }
 
@@ -189,7 +297,7 @@ class EncodingLengthComparator implements Comparator<FrequencyTableEntry> {
    *               </ul>
    */
   public int compare(FrequencyTableEntry obj1, FrequencyTableEntry obj2) {
-    return obj1.getEncoding().length() - obj2.getEncoding().length();
+    return obj1.getEncodingLength() - obj2.getEncodingLength();
   }
 }
 
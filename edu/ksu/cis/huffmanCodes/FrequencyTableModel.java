@@ -0,0 +1,307 @@
+// File: FrequencyTableModel.java
+// The data displayed in the frequency table of a HuffmanFrame.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The data displayed in the frequency table of a HuffmanFrame.  Each row
+ * gives a symbol, its value in hexadecimal, its code and its count; when
+ * the symbols are bytes, the hexadecimal value comes first.  The entries
+ * are never moved; the table is sorted by permuting an array of indices,
+ * and the text of a cell is produced only when the cell is displayed, so
+ * sorting a large table creates no objects other than a temporary array.
+ * <p>
+ * Sorting in a TableOrder uses stable radix sorts on the primitive keys
+ * of the entries, least significant key first.  Because each such sort is
+ * stable, the order of the rows is given by the TableOrders sorted in,
+ * from the most recent, up to the first that is total; the permutation
+ * for each such sequence is kept, so that sorting again in an order used
+ * before takes no time.  There are at most 15 such sequences.
+ */
+class FrequencyTableModel extends AbstractTableModel {
+
+  /**
+   * The kind of column giving the symbol.
+   */
+  public static final int CHARACTER = 0;
+
+  /**
+   * The kind of column giving the symbol in hexadecimal.
+   */
+  public static final int HEX = 1;
+
+  /**
+   * The kind of column giving the code.
+   */
+  public static final int CODE = 2;
+
+  /**
+   * The kind of column giving the count.
+   */
+  public static final int COUNT = 3;
+
+  /**
+   * The names of the kinds of columns.
+   */
+  private static final String[] NAMES = { "Char", "Hex", "Code", "Count" };
+
+  /**
+   * The entries, in their original order.
+   */
+  private FrequencyTableEntry[] entries;
+
+  /**
+   * The index of the entry in each row.  The array may also be kept in
+   * permutations, so it is replaced rather than changed.
+   */
+  private int[] order;
+
+  /**
+   * The TableOrders giving the current order of the rows, the most
+   * recently sorted in first, ending with a total order; or null if the
+   * order is not given by TableOrders.
+   */
+  private ArrayList<TableOrder> sortedBy;
+
+  /**
+   * The order of the rows for each sequence of TableOrders sorted in,
+   * keyed by the String form of the List.
+   */
+  private HashMap<String, int[]> permutations = new HashMap<>();
+
+  /**
+   * Indicates whether the symbols are bytes.
+   */
+  private boolean bytes;
+
+  /**
+   * The length of the longest code.
+   */
+  private int maxCodeLength;
+
+  /**
+   * The number of digits in the largest count.
+   */
+  private int maxCountLength;
+
+  /**
+   * Used for consistency in serialization.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a FrequencyTableModel displaying the given entries in the
+   * given order.  The array is not copied.
+   * @param table  The entries.
+   * @param b      Whether the symbols are bytes.
+   * @param o      The total TableOrder in which the entries are sorted,
+   *               or null if they are not.
+   */
+  public FrequencyTableModel(FrequencyTableEntry[] table, boolean b,
+			     TableOrder o) {
+    entries = table;
+    bytes = b;
+    order = new int[table.length];
+    long maxCount = 0;
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+      maxCodeLength = Math.max(maxCodeLength, table[i].getEncoding().length());
+      maxCount = Math.max(maxCount, table[i].getLongCount());
+    }
+    maxCountLength = String.valueOf(maxCount).length();
+    if (o != null && o.isTotal()) {
+      sortedBy = new ArrayList<>();
+      sortedBy.add(o);
+      permutations.put(sortedBy.toString(), order);
+    }
+  }
+
+  /**
+   * Returns the number of rows.
+   */
+  public int getRowCount() {
+    return entries.length;
+  }
+
+  /**
+   * Returns the number of columns.
+   */
+  public int getColumnCount() {
+    return NAMES.length;
+  }
+
+  /**
+   * Returns the kind of the given column: CHARACTER, HEX, CODE or COUNT.
+   */
+  public int getColumnKind(int col) {
+    if (bytes && col < 2) return 1 - col; // The byte value is the key
+    else return col;
+  }
+
+  /**
+   * Returns the name of the given column.
+   */
+  public String getColumnName(int col) {
+    return NAMES[getColumnKind(col)];
+  }
+
+  /**
+   * Returns the entry displayed in the given row.
+   */
+  public FrequencyTableEntry getEntry(int row) {
+    return entries[order[row]];
+  }
+
+  /**
+   * Returns the text displayed in the given cell.
+   */
+  public Object getValueAt(int row, int col) {
+    FrequencyTableEntry e = getEntry(row);
+    char c = e.getCharacter().charValue();
+    switch (getColumnKind(col)) {
+    case CHARACTER:
+      return getCharacterLabel(c, bytes);
+    case HEX:
+      if (bytes) return String.format("%02x", (int) c);
+      else return Integer.toString((int) c, 16);
+    case CODE:
+      return e.getEncoding();
+    default:
+      return String.valueOf(e.getLongCount());
+    }
+  }
+
+  /**
+   * Returns a text at least as wide as any in the given column.
+   */
+  public String getWidestValue(int col) {
+    int kind = getColumnKind(col);
+    if (kind == CHARACTER) return "\u6f22"; // A full-width character
+    else if (kind == HEX) return bytes ? "ff" : "ffff";
+    else return "0".repeat(kind == CODE ? maxCodeLength : maxCountLength);
+  }
+
+  /**
+   * Sorts the rows in the given TableOrder.  The sort is stable, so rows
+   * that are equal in that order remain in their current order.
+   */
+  public void sort(TableOrder o) {
+    if (sortedBy != null && sortedBy.get(0) == o) return; // Already sorted
+    ArrayList<TableOrder> next = null;
+    if (sortedBy != null || o.isTotal()) {
+      next = new ArrayList<>();
+      next.add(o);
+    }
+    if (sortedBy != null) {
+      for (int i = 0; !o.isTotal() && i < sortedBy.size(); i++) {
+	TableOrder p = sortedBy.get(i);
+	if (p != o) next.add(p);
+	if (p.isTotal()) break;
+      }
+    }
+    int[] perm = next == null ? null : permutations.get(next.toString());
+    if (perm == null) {
+      perm = order.clone();
+      sort(entries, perm, o);
+      if (next != null) permutations.put(next.toString(), perm);
+    }
+    order = perm;
+    sortedBy = next;
+    fireTableRowsUpdated(0, order.length - 1);
+  }
+
+  /**
+   * Sorts the given indices of the given entries in the given TableOrder.
+   * The sort is stable.  Each key is sorted by a RadixSort, except that
+   * codes longer than 63 bits are sorted using a Comparator.
+   */
+  static void sort(FrequencyTableEntry[] entries, int[] perm, TableOrder o) {
+    long[] keys = new long[entries.length];
+    switch (o) {
+    case DEFAULT:
+      sort(entries, perm, TableOrder.ENCODING);
+      sort(entries, perm, TableOrder.ENCODING_LENGTH);
+      sort(entries, perm, TableOrder.COUNT);
+      return;
+    case CHARACTER:
+      for (int i = 0; i < keys.length; i++) 
+	keys[i] = entries[i].getCharacter().charValue();
+      break;
+    case ENCODING:
+      for (int i = 0; i < keys.length; i++) {
+	keys[i] = entries[i].getEncodingKey();
+	if (keys[i] < 0) {
+	  mergeSort(entries, perm, o.getComparator());
+	  return;
+	}
+      }
+      // Equal keys are ordered by length.
+      sort(entries, perm, TableOrder.ENCODING_LENGTH);
+      break;
+    case ENCODING_LENGTH:
+      for (int i = 0; i < keys.length; i++) 
+	keys[i] = entries[i].getEncodingLength();
+      break;
+    default:
+      long max = 0;
+      for (int i = 0; i < keys.length; i++) 
+	max = Math.max(max, entries[i].getLongCount());
+      for (int i = 0; i < keys.length; i++) 
+	keys[i] = max - entries[i].getLongCount();
+    }
+    RadixSort.sort(perm, keys);
+  }
+
+  /**
+   * Sorts the rows using the given Comparator.  The sort is stable, so
+   * rows that are equal remain in their current order.
+   */
+  public void sort(Comparator<FrequencyTableEntry> c) {
+    int[] perm = order.clone();
+    mergeSort(entries, perm, c);
+    order = perm;
+    sortedBy = null;
+    fireTableRowsUpdated(0, order.length - 1);
+  }
+
+  /**
+   * Sorts the given indices of the given entries using the given
+   * Comparator, by a stable bottom-up merge sort.
+   */
+  private static void mergeSort(FrequencyTableEntry[] entries, int[] order,
+				Comparator<FrequencyTableEntry> c) {
+    int[] tmp = new int[order.length];
+    for (int width = 1; width < order.length; width *= 2) {
+      for (int lo = 0; lo < order.length - width; lo += 2*width) {
+	int mid = lo + width;
+	int hi = Math.min(lo + 2*width, order.length);
+	if (c.compare(entries[order[mid - 1]], entries[order[mid]]) <= 0)
+	  continue; // Already in order
+	System.arraycopy(order, lo, tmp, lo, hi - lo);
+	int i = lo;
+	int j = mid;
+	for (int k = lo; k < hi; k++) {
+	  if (j >= hi || (i < mid && c.compare(entries[tmp[i]],
+					       entries[tmp[j]]) <= 0))
+	    order[k] = tmp[i++];
+	  else order[k] = tmp[j++];
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the text to be displayed in the character column for the given
+   * symbol.  Bytes that are not printable Latin-1 characters are displayed
+   * as a blank.
+   */
+  static String getCharacterLabel(char c, boolean bytes) {
+    if (bytes && (c < 0x20 || (c >= 0x7f && c < 0xa0))) return " ";
+    else return String.valueOf(c);
+  }
+}
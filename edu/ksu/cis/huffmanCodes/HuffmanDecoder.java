@@ -0,0 +1,316 @@
+// File: HuffmanDecoder.java
+// Decodes symbols using the codes of a Huffman tree.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.IOException;
+
+/**
+ * Decodes symbols encoded using the codes of a HuffmanTree.  Decoding is
+ * driven by a primary table indexed by the next PRIMARY_BITS bits of input.
+ * An entry of the primary table either gives the one or two symbols whose
+ * codes begin those bits, or refers to a secondary table indexed by the 
+ * bits that follow.  A secondary table is at most SECONDARY_BITS wide;
+ * codes too long even for that are finished by walking the tree.
+ */
+public class HuffmanDecoder {
+
+  /**
+   * The maximum number of bits indexing the primary table.
+   */
+  public static final int PRIMARY_BITS = 11;
+
+  /**
+   * The maximum number of bits indexing a secondary table.
+   */
+  public static final int SECONDARY_BITS = 12;
+
+  /**
+   * The position of the second symbol in a primary entry.
+   */
+  private static final int SYMBOL2 = 16;
+
+  /**
+   * The position of the length of the first code in an entry.
+   */
+  private static final int LENGTH1 = 32;
+
+  /**
+   * The position of the total length of the codes in a primary entry.
+   */
+  private static final int TOTAL = 40;
+
+  /**
+   * The position of the number of symbols in a primary entry: 0 if the
+   * entry refers to a secondary table.
+   */
+  private static final int COUNT = 48;
+
+  /**
+   * The flag marking a secondary entry that refers to a node of the tree.
+   */
+  private static final long TREE_NODE = 1L << 63;
+
+  /**
+   * The number of bits indexing the primary table.
+   */
+  private int primaryBits;
+
+  /**
+   * The primary table.
+   */
+  private long[] primary;
+
+  /**
+   * The secondary tables, one after another.  A primary entry referring to
+   * a secondary table holds its offset in the low-order 32 bits and its
+   * width in the next 8.
+   */
+  private long[] secondary;
+
+  /**
+   * The tree, used for the longest codes.
+   */
+  private HuffmanTree tree;
+
+  /**
+   * The only symbol, if the tree is a single leaf, or -1.
+   */
+  private int onlySymbol = -1;
+
+  /**
+   * The largest symbol.
+   */
+  private int maxSymbol = -1;
+
+  /**
+   * Constructs a decoder for the codes of the given HuffmanTree.
+   */
+  HuffmanDecoder(HuffmanTree t) {
+    tree = t;
+    int n = t.getSymbolCount();
+    if (n > 0) maxSymbol = t.getSymbol(n - 1);
+    if (n == 1) onlySymbol = t.getSymbol(0);
+    if (n <= 1) return;
+    int nodes = 2*n - 1;
+    // Find the height of each subtree; children precede parents.
+    int[] height = new int[nodes];
+    for (int i = n; i < nodes; i++)
+      height[i] = 1 + Math.max(height[t.getLeft(i)], height[t.getRight(i)]);
+    primaryBits = Math.min(PRIMARY_BITS, height[nodes - 1]);
+    primary = new long[1 << primaryBits];
+    // Count the room needed by the secondary tables.
+    int[] stack = new int[nodes];
+    int[] depth = new int[nodes];
+    long[] code = new long[nodes];
+    int room = 0;
+    int top = 0;
+    stack[top++] = nodes - 1;
+    while (top > 0) {
+      int v = stack[--top];
+      if (height[v] == 0) continue;
+      if (depth[v] == primaryBits) 
+	room += 1 << Math.min(height[v], SECONDARY_BITS);
+      else {
+	push(t, v, stack, top, depth, code);
+	top += 2;
+      }
+    }
+    secondary = new long[room];
+    // Fill the tables.
+    room = 0;
+    stack[top++] = nodes - 1;
+    while (top > 0) {
+      int v = stack[--top];
+      int d = depth[v];
+      if (height[v] == 0) {
+	int shift = primaryBits - d;
+	long e = t.getSymbol(v) | (long) d << LENGTH1 | (long) d << TOTAL 
+	  | 1L << COUNT;
+	int first = (int) (code[v] << shift);
+	for (int k = 0; k < 1 << shift; k++) primary[first + k] = e;
+      }
+      else if (d == primaryBits) {
+	int w = Math.min(height[v], SECONDARY_BITS);
+	primary[(int) code[v]] = room | (long) w << 32;
+	fillSecondary(v, w, room);
+	room += 1 << w;
+      }
+      else {
+	push(t, v, stack, top, depth, code);
+	top += 2;
+      }
+    }
+    // Pair up codes that fit together in the primary bits.
+    for (int i = 0; i < primary.length; i++) {
+      long e = primary[i];
+      int len1 = (int) (e >>> LENGTH1) & 0xff;
+      if ((e >>> COUNT) == 0 || len1 == primaryBits) continue;
+      long e2 = primary[(i << len1) & (primary.length - 1)];
+      int len2 = (int) (e2 >>> LENGTH1) & 0xff;
+      if ((e2 >>> COUNT) == 0 || len1 + len2 > primaryBits) continue;
+      primary[i] = (e & 0xffff) | (e2 & 0xffff) << SYMBOL2 
+	| (long) len1 << LENGTH1 | (long) (len1 + len2) << TOTAL 
+	| 2L << COUNT;
+    }
+  }
+
+  /**
+   * Pushes the children of node v onto the given stack, at top and
+   * top + 1, recording their depths and codes.
+   */
+  private static void push(HuffmanTree t, int v, int[] stack, int top,
+			   int[] depth, long[] code) {
+    int l = t.getLeft(v);
+    int r = t.getRight(v);
+    depth[l] = depth[r] = depth[v] + 1;
+    code[l] = code[v] << 1;
+    code[r] = (code[v] << 1) | 1;
+    stack[top] = r;
+    stack[top + 1] = l;
+  }
+
+  /**
+   * Fills the secondary table of width w beginning at the given offset with
+   * the codes of the subtree rooted at the given node.
+   */
+  private void fillSecondary(int root, int w, int offset) {
+    int[] stack = new int[2*w + 2];
+    int[] depth = new int[2*w + 2];
+    int[] code = new int[2*w + 2];
+    int top = 0;
+    stack[0] = root;
+    top++;
+    while (top > 0) {
+      top--;
+      int v = stack[top];
+      int d = depth[top];
+      int c = code[top];
+      if (tree.getLeft(v) < 0 || d == w) {
+	long e = tree.getLeft(v) < 0 
+	  ? tree.getSymbol(v) | (long) (primaryBits + d) << LENGTH1
+	  : TREE_NODE | v | (long) (primaryBits + d) << LENGTH1;
+	int shift = w - d;
+	int first = offset + (c << shift);
+	for (int k = 0; k < 1 << shift; k++) secondary[first + k] = e;
+      }
+      else {
+	stack[top] = tree.getRight(v);
+	depth[top] = d + 1;
+	code[top] = (c << 1) | 1;
+	stack[top + 1] = tree.getLeft(v);
+	depth[top + 1] = d + 1;
+	code[top + 1] = c << 1;
+	top += 2;
+      }
+    }
+  }
+
+  /**
+   * Decodes len characters into the given array, beginning at index off.
+   * @throws java.io.EOFException  If the input ends first.
+   * @throws IOException           If an I/O error occurs.
+   */
+  public void decode(BitReader in, char[] out, int off, int len) 
+    throws IOException {
+    int end = off + len;
+    int i = off;
+    if (onlySymbol >= 0 || len == 0) {
+      fillOnly(end - i);
+      for (; i < end; i++) out[i] = (char) onlySymbol;
+      return;
+    }
+    long[] table = primary;
+    int k = primaryBits;
+    while (i < end - 1) {
+      long e = table[(int) in.peek(k)];
+      int count = (int) (e >>> COUNT);
+      if (count == 2) {
+	out[i++] = (char) e;
+	out[i++] = (char) (e >>> SYMBOL2);
+	in.skip((int) (e >>> TOTAL) & 0xff);
+      }
+      else if (count == 1) {
+	out[i++] = (char) e;
+	in.skip((int) (e >>> LENGTH1) & 0xff);
+      }
+      else out[i++] = (char) decodeLong(in, e);
+    }
+    if (i < end) out[i] = (char) decodeOne(in);
+  }
+
+  /**
+   * Decodes len bytes into the given array, beginning at index off.
+   * @throws IllegalStateException  If the tree has symbols that are not 
+   *                                bytes.
+   * @throws java.io.EOFException   If the input ends first.
+   * @throws IOException            If an I/O error occurs.
+   */
+  public void decode(BitReader in, byte[] out, int off, int len) 
+    throws IllegalStateException, IOException {
+    if (maxSymbol >= FrequencyCounter.BYTE_ALPHABET_SIZE)
+      throw new IllegalStateException("Symbols are not bytes");
+    int end = off + len;
+    int i = off;
+    if (onlySymbol >= 0 || len == 0) {
+      fillOnly(end - i);
+      for (; i < end; i++) out[i] = (byte) onlySymbol;
+      return;
+    }
+    long[] table = primary;
+    int k = primaryBits;
+    while (i < end - 1) {
+      long e = table[(int) in.peek(k)];
+      int count = (int) (e >>> COUNT);
+      if (count == 2) {
+	out[i++] = (byte) e;
+	out[i++] = (byte) (e >>> SYMBOL2);
+	in.skip((int) (e >>> TOTAL) & 0xff);
+      }
+      else if (count == 1) {
+	out[i++] = (byte) e;
+	in.skip((int) (e >>> LENGTH1) & 0xff);
+      }
+      else out[i++] = (byte) decodeLong(in, e);
+    }
+    if (i < end) out[i] = (byte) decodeOne(in);
+  }
+
+  /**
+   * Decodes one symbol.
+   * @throws java.io.EOFException  If the input ends first.
+   * @throws IOException           If an I/O error occurs.
+   */
+  public int decodeOne(BitReader in) throws IOException {
+    fillOnly(1);
+    if (onlySymbol >= 0) return onlySymbol;
+    long e = primary[(int) in.peek(primaryBits)];
+    if ((e >>> COUNT) == 0) return decodeLong(in, e);
+    in.skip((int) (e >>> LENGTH1) & 0xff);
+    return (int) e & 0xffff;
+  }
+
+  /**
+   * Decodes a symbol whose code is longer than the primary bits, given the
+   * primary entry referring to its secondary table.
+   */
+  private int decodeLong(BitReader in, long e) throws IOException {
+    int w = (int) (e >>> 32) & 0xff;
+    int k = primaryBits;
+    long s = secondary[(int) e + (int) (in.peek(k + w) & ((1 << w) - 1))];
+    in.skip((int) (s >>> LENGTH1) & 0xff);
+    if ((s & TREE_NODE) == 0) return (int) s & 0xffff;
+    int v = (int) s & 0x7fffffff;
+    while (tree.getLeft(v) >= 0)
+      v = in.readBit() == 0 ? tree.getLeft(v) : tree.getRight(v);
+    return tree.getSymbol(v);
+  }
+
+  /**
+   * Throws an exception if n symbols are requested from an empty tree.
+   */
+  private void fillOnly(int n) {
+    if (n > 0 && maxSymbol < 0) 
+      throw new IllegalStateException("The tree has no symbols");
+  }
+}
@@ -0,0 +1,182 @@
+// File: HuffmanEncoder.java
+// Encodes symbols using the codes of a Huffman tree.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Encodes symbols using the codes of a HuffmanTree, writing the packed
+ * bits to a BitWriter.  The code and code length of every symbol in the
+ * alphabet are precomputed in arrays indexed by symbol, so encoding does
+ * no allocation per symbol.
+ */
+public class HuffmanEncoder {
+
+  /**
+   * The number of chars read at a time from a Reader.
+   */
+  private static final int BUFFER_SIZE = 1 << 13;
+
+  /**
+   * The code length of each symbol, or -1 if the symbol has no code.
+   */
+  private int[] lengths;
+
+  /**
+   * The code of each symbol whose code has at most 64 bits.
+   */
+  private long[] codes;
+
+  /**
+   * The code of each symbol whose code has more than 64 bits, or null if
+   * there are no such symbols.
+   */
+  private BitSet[] longCodes;
+
+  /**
+   * Constructs an encoder for the codes of the given HuffmanTree.
+   */
+  HuffmanEncoder(HuffmanTree t) {
+    int size = t.isByteAlphabet() ? FrequencyCounter.BYTE_ALPHABET_SIZE
+      : FrequencyCounter.CHAR_ALPHABET_SIZE;
+    lengths = new int[size];
+    codes = new long[size];
+    Arrays.fill(lengths, -1);
+    for (int i = 0; i < t.getSymbolCount(); i++) {
+      int c = t.getSymbol(i);
+      lengths[c] = t.getCodeLength(i);
+      if (lengths[c] <= 64) codes[c] = t.getCode(i);
+      else {
+	if (longCodes == null) longCodes = new BitSet[size];
+	longCodes[c] = t.getLongCode(i);
+      }
+    }
+  }
+
+  /**
+   * Returns the length of the code of the given symbol, or -1 if it has
+   * no code.
+   */
+  public int getCodeLength(int symbol) {
+    return lengths[symbol];
+  }
+
+  /**
+   * Encodes the characters of the given CharSequence.
+   * @return  The number of bits written.
+   * @throws IllegalArgumentException  If a character has no code.
+   * @throws IOException               If an I/O error occurs.
+   */
+  public long encode(CharSequence s, BitWriter out) 
+    throws IllegalArgumentException, IOException {
+    long start = out.getBitCount();
+    int n = s.length();
+    for (int i = 0; i < n; i++) write(s.charAt(i), out);
+    return out.getBitCount() - start;
+  }
+
+  /**
+   * Encodes the given portion of a char array.
+   * @return  The number of bits written.
+   * @throws IllegalArgumentException  If a character has no code.
+   * @throws IOException               If an I/O error occurs.
+   */
+  public long encode(char[] buf, int off, int len, BitWriter out)
+    throws IllegalArgumentException, IOException {
+    long start = out.getBitCount();
+    int end = off + len;
+    for (int i = off; i < end; i++) write(buf[i], out);
+    return out.getBitCount() - start;
+  }
+
+  /**
+   * Encodes the characters read from the given Reader until end of stream.
+   * The Reader is not closed.
+   * @return  The number of bits written.
+   * @throws IllegalArgumentException  If a character has no code.
+   * @throws IOException               If an I/O error occurs.
+   */
+  public long encode(Reader in, BitWriter out) 
+    throws IllegalArgumentException, IOException {
+    long start = out.getBitCount();
+    char[] buf = new char[BUFFER_SIZE];
+    int n = in.read(buf);
+    while (n != -1) {
+      encode(buf, 0, n, out);
+      n = in.read(buf);
+    }
+    return out.getBitCount() - start;
+  }
+
+  /**
+   * Encodes the bytes remaining in the given ByteBuffer, each as the
+   * symbol having its unsigned value, leaving the ByteBuffer's position at
+   * its limit.
+   * @return  The number of bits written.
+   * @throws IllegalArgumentException  If a byte has no code.
+   * @throws IOException               If an I/O error occurs.
+   */
+  public long encode(ByteBuffer in, BitWriter out) 
+    throws IllegalArgumentException, IOException {
+    long start = out.getBitCount();
+    int end = in.limit();
+    for (int i = in.position(); i < end; i++) write(in.get(i) & 0xff, out);
+    in.position(end);
+    return out.getBitCount() - start;
+  }
+
+  /**
+   * Returns the number of bits needed to encode the given portion of a 
+   * char array.
+   * @throws IllegalArgumentException  If a character has no code.
+   */
+  long measure(char[] buf, int off, int len) throws IllegalArgumentException {
+    long bits = 0;
+    int bad = 0;
+    int end = off + len;
+    for (int i = off; i < end; i++) {
+      int l = lengths[buf[i]];
+      bits += l;
+      bad |= l;
+    }
+    if (bad < 0) throw new IllegalArgumentException("No code for a symbol");
+    return bits;
+  }
+
+  /**
+   * Returns the number of bits needed to encode the bytes remaining in the 
+   * given ByteBuffer, whose position is not changed.
+   * @throws IllegalArgumentException  If a byte has no code.
+   */
+  long measure(ByteBuffer in) throws IllegalArgumentException {
+    long bits = 0;
+    int bad = 0;
+    int end = in.limit();
+    for (int i = in.position(); i < end; i++) {
+      int l = lengths[in.get(i) & 0xff];
+      bits += l;
+      bad |= l;
+    }
+    if (bad < 0) throw new IllegalArgumentException("No code for a symbol");
+    return bits;
+  }
+
+  /**
+   * Writes the code of the given symbol.
+   */
+  private void write(int symbol, BitWriter out) 
+    throws IllegalArgumentException, IOException {
+    int len = symbol < lengths.length ? lengths[symbol] : -1;
+    if (len <= 64) {
+      if (len < 0) 
+	throw new IllegalArgumentException("No code for symbol " + symbol);
+      out.write(codes[symbol], len);
+    }
+    else out.write(longCodes[symbol], len);
+  }
+}
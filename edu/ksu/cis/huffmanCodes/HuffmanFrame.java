@@ -5,19 +5,25 @@ package edu.ksu.cis.huffmanCodes;
 
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
-import java.util.Arrays;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import java.util.Comparator;
+import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumnModel;
 
 /**
  * A window for displaying a Huffman tree and codes.
@@ -29,6 +35,16 @@ public class HuffmanFrame extends JFrame {
    */
   private Box content = new Box(BoxLayout.X_AXIS);
 
+  /**
+   * The statistics of the code.
+   */
+  private JLabel statistics = new JLabel();
+
+  /**
+   * The drawing of the tree.
+   */
+  private TreeView treeView;
+
   /**
    * The scrolling frequency table.
    */
@@ -38,10 +54,16 @@ public class HuffmanFrame extends JFrame {
    * The Huffman tree.
    */
   HuffmanTree theTree;
+
   /**
    * The frequency table.
    */
-  private FrequencyTableEntry[] frequencyTable;
+  private JTable table;
+
+  /**
+   * The contents of the frequency table.
+   */
+  private FrequencyTableModel tableModel;
 
   /**
    * The current font size.
@@ -85,30 +107,35 @@ public class HuffmanFrame extends JFrame {
    * @param codes  The Huffman code of each corresponding Character.
    */
   public HuffmanFrame(HuffmanTree t) {
+    this(t, sortedTable(t));
+  }
+
+  /**
+   * Constructs a new HuffmanFrame displaying the given tree and its
+   * frequency table, which has already been built, and is sorted in the
+   * order given by getDefaultOrder.  The table is not copied.
+   */
+  HuffmanFrame(HuffmanTree t, FrequencyTableEntry[] entries) {
     theTree = t;
+    setDefaultCloseOperation(DISPOSE_ON_CLOSE);
     JMenuBar mb = new JMenuBar();
     setJMenuBar(mb);
 
     // The "Sort by..." menu
     JMenu m = new JMenu("Sort by...");
-    JMenuItem sortByChar = new JMenuItem("Character");
-    sortByChar.addActionListener
-      (new SortListener(this, FrequencyTableEntry.getCharacterComparator()));
+    JMenuItem sortByChar = 
+      new JMenuItem(t.isByteAlphabet() ? "Byte" : "Character");
+    sortByChar.addActionListener(new SortListener(this, TableOrder.CHARACTER));
     m.add(sortByChar);
     JMenuItem sortByCode = new JMenuItem("Encoding");
-    sortByCode.addActionListener
-      (new SortListener(this, FrequencyTableEntry.getEncodingComparator()));
+    sortByCode.addActionListener(new SortListener(this, TableOrder.ENCODING));
     m.add(sortByCode);
     JMenuItem sortByCodeLength = new JMenuItem("Encoding Length");
     sortByCodeLength.addActionListener
-      (new SortListener(this, 
-			FrequencyTableEntry.getEncodingLengthComparator()));
+      (new SortListener(this, TableOrder.ENCODING_LENGTH));
     m.add(sortByCodeLength);
     JMenuItem sortByCount = new JMenuItem("Frequency");
-    sortByCount.addActionListener
-      (new SortListener(this, 
-			new ReverseComparator<FrequencyTableEntry>
-			(FrequencyTableEntry.getCountComparator())));
+    sortByCount.addActionListener(new SortListener(this, TableOrder.COUNT));
     m.add(sortByCount);
     mb.add(m);
 
@@ -133,18 +160,83 @@ public class HuffmanFrame extends JFrame {
     fm.add(italicBox);
     mb.add(fm);    
 
-    setContentPane(content);
-    frequencyTable = t.getFrequencyTable();
-    sortFrequencyTable(new ComparatorCombination<FrequencyTableEntry>
-		       (new ReverseComparator<FrequencyTableEntry>
-			(FrequencyTableEntry.getCountComparator()), 
-			new ComparatorCombination<FrequencyTableEntry>
-			(FrequencyTableEntry.getEncodingLengthComparator(), 
-			 FrequencyTableEntry.getEncodingComparator())));
+    JPanel pane = new JPanel(new BorderLayout());
+    pane.add(content, BorderLayout.CENTER);
+    statistics.setText(getStatistics(t));
+    pane.add(statistics, BorderLayout.SOUTH);
+    setContentPane(pane);
+    tableModel = new FrequencyTableModel(entries, t.isByteAlphabet(),
+					 TableOrder.DEFAULT);
+    table = new JTable(tableModel);
+    table.setShowGrid(false);
+    table.setIntercellSpacing(new Dimension(0, 0));
+    table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+    table.getTableHeader().setReorderingAllowed(false);
+    DefaultTableCellRenderer right = new DefaultTableCellRenderer();
+    right.setHorizontalAlignment(SwingConstants.RIGHT);
+    TableColumnModel columns = table.getColumnModel();
+    for (int i = 0; i < columns.getColumnCount(); i++) {
+      int kind = tableModel.getColumnKind(i);
+      if (kind == FrequencyTableModel.HEX || kind == FrequencyTableModel.COUNT)
+	columns.getColumn(i).setCellRenderer(right);
+    }
+    codePane =
+      new JScrollPane(table, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
+		      JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+    theFont = new Font("Monospaced", fontStyle, fontSize);
+    treeView = new TreeView(t, theFont);
+    content.add(new JScrollPane(treeView));
+    content.add(codePane);
     setFontSize(fontSize);
     setSize(500, 300);
   }
 
+  /**
+   * Returns the order in which the frequency table is initially sorted:
+   * in descending order of count, then in ascending order of code length,
+   * then in ascending order of code.
+   */
+  static Comparator<FrequencyTableEntry> getDefaultOrder() {
+    return TableOrder.DEFAULT.getComparator();
+  }
+
+  /**
+   * Returns the frequency table of the given tree, sorted in the order
+   * given by getDefaultOrder.
+   */
+  static FrequencyTableEntry[] sortedTable(HuffmanTree t) {
+    FrequencyTableEntry[] table = t.getFrequencyTable();
+    int[] perm = new int[table.length];
+    for (int i = 0; i < perm.length; i++) perm[i] = i;
+    FrequencyTableModel.sort(table, perm, TableOrder.DEFAULT);
+    FrequencyTableEntry[] sorted = new FrequencyTableEntry[table.length];
+    for (int i = 0; i < perm.length; i++) sorted[i] = table[perm[i]];
+    return sorted;
+  }
+
+  /**
+   * Returns a description of the size of the encoding given by the given
+   * tree.  If the code lengths were limited, the cost of the limit is
+   * included.
+   */
+  private static String getStatistics(HuffmanTree t) {
+    long symbols = t.getWeight();
+    long bits = t.getEncodedLength();
+    StringBuilder sb = new StringBuilder(" Encoded: ");
+    sb.append(bits).append(" bits");
+    if (symbols > 0) 
+      sb.append(String.format(" (%.3f bits/symbol)", (double) bits / symbols));
+    sb.append("   Longest code: ").append(t.getMaxCodeLength());
+    if (t.getLengthLimit() > 0) {
+      long extra = bits - t.getUnlimitedEncodedLength();
+      sb.append("   Limit: ").append(t.getLengthLimit());
+      sb.append("   Cost of limit: +").append(extra).append(" bits");
+      if (bits > extra) 
+	sb.append(String.format(" (+%.3f%%)", 100.0 * extra / (bits - extra)));
+    }
+    return sb.toString();
+  }
+
   /**
    * Sets the font size.
    */
@@ -169,61 +261,33 @@ public class HuffmanFrame extends JFrame {
    * Draws the tree and frequency panel.
    */
   public void updateContent() {
-    content.removeAll();
-    content.add(new JScrollPane(theTree.getDrawing(theFont)));
+    treeView.setFont(theFont);
     updateFrequencyPanel();
   }    
 
   /**
-   * Updates the frequency panel to reflect the current state of the frequency
-   * table.
+   * Updates the frequency panel to use the current font.  The table draws
+   * only the rows that are visible, so its size does not matter.
    */
   public void updateFrequencyPanel() {
-    Box tableBox = new Box(BoxLayout.X_AXIS);
-    Box charBox = new Box(BoxLayout.Y_AXIS);
-    Box hexBox = new Box(BoxLayout.Y_AXIS);
-    Box codeBox = new Box(BoxLayout.Y_AXIS);
-    Box countBox = new Box(BoxLayout.Y_AXIS);
-    for (int i = 0; i < frequencyTable.length; i++) {
-      FrequencyTableEntry e = frequencyTable[i];
-      JLabel lbl = new JLabel(e.getCharacter() + "  ");
-      lbl.setFont(theFont);
-      charBox.add(lbl);
-      Box b = new Box(BoxLayout.X_AXIS);
-      b.add(Box.createHorizontalGlue());
-      lbl = new JLabel(Integer.toString
-		       ((int) (e.getCharacter().charValue()), 16));
-      lbl.setFont(theFont);
-      b.add(lbl);
-      hexBox.add(b);
-      lbl = new JLabel("  " + e.getEncoding() + "  ");
-      lbl.setFont(theFont);
-      codeBox.add(lbl);
-      b = new Box(BoxLayout.X_AXIS);
-      b.add(Box.createHorizontalGlue());
-      lbl = new JLabel(String.valueOf(e.getCount()));
-      lbl.setFont(theFont);
-      b.add(lbl);
-      countBox.add(b);
+    table.setFont(theFont);
+    table.getTableHeader().setFont(theFont);
+    FontMetrics fm = table.getFontMetrics(theFont);
+    table.setRowHeight(fm.getHeight());
+    int width = 0;
+    TableColumnModel columns = table.getColumnModel();
+    for (int i = 0; i < columns.getColumnCount(); i++) {
+      int w = Math.max(fm.stringWidth(tableModel.getWidestValue(i)),
+		       fm.stringWidth(tableModel.getColumnName(i)))
+	+ 2 * fm.charWidth(' ');
+      columns.getColumn(i).setPreferredWidth(w);
+      width += w;
     }
-    charBox.add(Box.createGlue());
-    hexBox.add(Box.createGlue());
-    codeBox.add(Box.createGlue());
-    countBox.add(Box.createGlue());
-    tableBox.add(Box.createHorizontalStrut(5));
-    tableBox.add(charBox);
-    tableBox.add(hexBox);
-    tableBox.add(codeBox);
-    tableBox.add(countBox);
-    tableBox.add(Box.createHorizontalStrut(5));
-    if (codePane != null) content.remove(codePane);
-    codePane =
-      new JScrollPane(tableBox, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
-		      JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
-    Dimension size = codePane.getPreferredSize();
-    codePane.setMinimumSize(new Dimension(size.width, 0));
-    codePane.setMaximumSize(new Dimension(size.width, 0x7fffffff));
-    content.add(codePane);
+    table.setPreferredScrollableViewportSize
+      (new Dimension(width, table.getPreferredScrollableViewportSize().height));
+    width = codePane.getPreferredSize().width;
+    codePane.setMinimumSize(new Dimension(width, 0));
+    codePane.setMaximumSize(new Dimension(width, 0x7fffffff));
     validate();
     repaint();
   }
@@ -232,7 +296,14 @@ public class HuffmanFrame extends JFrame {
    * Sorts the frequency table using the given Comparator.
    */
   public void sortFrequencyTable(Comparator<FrequencyTableEntry> c) {
-    Arrays.sort(frequencyTable, c);
+    tableModel.sort(c);
+  }
+
+  /**
+   * Sorts the frequency table in the given TableOrder.
+   */
+  public void sortFrequencyTable(TableOrder o) {
+    tableModel.sort(o);
   }
 }
 
@@ -247,24 +318,23 @@ class SortListener implements ActionListener {
   private HuffmanFrame theFrame;
 
   /**
-   * The Comparator.
+   * The order.
    */
-  private Comparator<FrequencyTableEntry> theComparator;
+  private TableOrder theOrder;
 
   /**
-   * Constructs a new SortListener that will sort using the given Comparator.
+   * Constructs a new SortListener that will sort in the given TableOrder.
    */
-  public SortListener(HuffmanFrame f, Comparator<FrequencyTableEntry> c) {
+  public SortListener(HuffmanFrame f, TableOrder o) {
     theFrame = f;
-    theComparator = c;
+    theOrder = o;
   }
 
   /**
    * Handles the event.  The parameter is ignored.
    */
   public void actionPerformed(ActionEvent e) {
-    theFrame.sortFrequencyTable(theComparator);
-    theFrame.updateFrequencyPanel();
+    theFrame.sortFrequencyTable(theOrder);
   }
 }
 
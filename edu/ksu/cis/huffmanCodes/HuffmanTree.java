@@ -4,56 +4,445 @@
 package  edu.ksu.cis.huffmanCodes;
 
 import edu.ksu.cis.viewer.BinaryTree;
-import java.util.Enumeration;
 import java.awt.Font;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import edu.ksu.cis.viewer.Node;
 import edu.ksu.cis.viewer.TreeComponent;
-import java.util.Vector;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 
 /**
  * This class builds a Huffman tree from a String.  The set of characters
  * used, as well as their frequencies and codes, can then be retrieved.
+ * A Huffman tree may also be built over the 256-symbol byte alphabet, in
+ * which case each byte value is represented by the Character having the
+ * same value, and the leaves are labeled by byte value in hexadecimal.
  */
 public class HuffmanTree implements Serializable {
 
   /**
-   * The characters in the encoded string.
+   * The symbols in the encoded string, in ascending order.  Leaf i of the
+   * tree contains symbols[i].
    */
-  private Vector<Character> characters = new Vector<Character>();
+  private int[] symbols;
 
   /**
-   * The frequencies.  The keys are Characters, and the elements are
-   * Integer frequencies.
+   * The length of the Huffman code of each leaf.
    */
-  private HashMap<Character, Integer> frequencies =
-    new HashMap<Character, Integer>();
+  private int[] codeLengths;
 
   /**
-   * The encodings.  The keys are Characters, and the elements are binary
-   * encodings represented as Strings.
+   * The Huffman code of each leaf whose code has at most 64 bits.  The
+   * first bit of the code is the most significant of its codeLength bits.
    */
-  private HashMap<Character, String> encodings =
-    new HashMap<Character, String>();
+  private long[] codes;
 
   /**
-   * The tree.
+   * The Huffman code of each leaf whose code has more than 64 bits, with
+   * the first bit of the code at index 0; null if there are no such leaves.
    */
-  private BinaryTree theTree;
+  private BitSet[] longCodes;
+
+  /**
+   * Indicates whether the symbols are bytes rather than characters.
+   */
+  private boolean byteAlphabet;
+
+  /**
+   * The left child of each node, or -1 for a leaf.  Nodes 0 through n - 1
+   * are the leaves, and every internal node has a larger index than either
+   * of its children, so the root is always the last node.
+   */
+  private int[] left;
+
+  /**
+   * The right child of each node, or -1 for a leaf.
+   */
+  private int[] right;
+
+  /**
+   * The parent of each node, or -1 for the root.
+   */
+  private int[] parent;
+
+  /**
+   * The weight of each node.  The weight of a leaf is the number of
+   * occurrences of its symbol.
+   */
+  private long[] weight;
+
+  /**
+   * Indicates whether the codes are canonical; i.e., whether they were 
+   * assigned from the code lengths alone.
+   */
+  private boolean canonical;
+
+  /**
+   * The maximum code length imposed on this tree, or 0 if there is none.
+   */
+  private int lengthLimit;
+
+  /**
+   * Indicates whether the shape of the tree is the one built from its
+   * counts by buildTree, so that it can be rebuilt from them.
+   */
+  private boolean builtFromCounts;
+
+  /**
+   * Indicates whether the shape and codes have yet to be built from the
+   * data read by read.
+   */
+  private volatile boolean pending;
+
+  /**
+   * The encoder for this tree's codes, or null if it has not yet been 
+   * needed.
+   */
+  private transient HuffmanEncoder encoder;
+
+  /**
+   * The decoder for this tree's codes, or null if it has not yet been 
+   * needed.
+   */
+  private transient HuffmanDecoder decoder;
+
+  /**
+   * The tree as displayed by the viewer, or null if it has not yet been
+   * needed.
+   */
+  private transient BinaryTree theTree;
+
+  /**
+   * The layout of the tree as drawn by a TreeView, or null if it has not
+   * been computed.
+   */
+  private transient TreeLayout layout;
 
   /**
    * Used for consistency in serialization.
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * The message given when code lengths are invalid.
+   */
+  private static final String BAD_LENGTHS = 
+    "Code lengths do not describe a complete prefix code";
+
+  /**
+   * The version of the format written by write.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  /**
+   * The kinds of shape recorded by write: one built from the counts, the
+   * canonical tree for the code lengths, and one given node by node.
+   */
+  private static final int BUILT_SHAPE = 0, CANONICAL_SHAPE = 1, 
+    EXPLICIT_SHAPE = 2;
+
+  /**
+   * The bits of the flags written by write: the kind of shape, whether the
+   * symbols are bytes, and whether counts are present.
+   */
+  private static final int SHAPE_MASK = 3, BYTES_FLAG = 4, COUNTS_FLAG = 8;
+
+  /**
+   * The greatest length that write can give for the data of a tree.
+   */
+  private static final int MAX_FORMAT_LENGTH = 
+    11 + 15*FrequencyCounter.CHAR_ALPHABET_SIZE 
+    + FrequencyCounter.CHAR_ALPHABET_SIZE / 4;
+
   /**
    * Constructs a HuffmanTree from the given String.
    */
   public HuffmanTree(String s) {
-    findFrequencies(s);
-    buildTree();
-    generateEncodings(theTree, "");
+    this(count(s));
+  }
+
+  /**
+   * Constructs a HuffmanTree from the counts in the given FrequencyCounter.
+   */
+  public HuffmanTree(FrequencyCounter counter) {
+    this(counter, BuildStrategy.HEAP);
+  }
+
+  /**
+   * Constructs a HuffmanTree from the counts in the given FrequencyCounter
+   * using the given BuildStrategy.
+   */
+  public HuffmanTree(FrequencyCounter counter, BuildStrategy strategy) {
+    this(counter, strategy, null);
+  }
+
+  /**
+   * Constructs a HuffmanTree from the counts in the given FrequencyCounter
+   * using the given BuildStrategy, recording the time taken to find the
+   * frequencies, build the tree and generate the codes, in nanoseconds, in
+   * the first three elements of the given array, if it is not null.
+   */
+  HuffmanTree(FrequencyCounter counter, BuildStrategy strategy,
+	      long[] phaseTimes) {
+    long start = System.nanoTime();
+    byteAlphabet = counter.isByteAlphabet();
+    findFrequencies(counter);
+    long found = System.nanoTime();
+    if (strategy == BuildStrategy.TWO_QUEUE) buildTreeFromSorted();
+    else buildTree();
+    builtFromCounts = true;
+    long built = System.nanoTime();
+    generateEncodings();
+    if (phaseTimes != null) {
+      phaseTimes[0] = found - start;
+      phaseTimes[1] = built - found;
+      phaseTimes[2] = System.nanoTime() - built;
+    }
+  }
+
+  /**
+   * Constructs a HuffmanTree from the counts in the given FrequencyCounter
+   * whose codes are no longer than the given maximum length.  The code
+   * lengths are found using the package-merge algorithm, which minimizes 
+   * the length of the encoded input subject to this limit, and the codes
+   * are canonical.  The algorithm takes O(nL) time for n symbols and 
+   * maximum length L.
+   * @throws IllegalArgumentException  If the maximum length is not 
+   *                                   positive, or is too small to give
+   *                                   every symbol a distinct code.
+   */
+  public HuffmanTree(FrequencyCounter counter, int maxLength)
+    throws IllegalArgumentException {
+    if (maxLength < 1)
+      throw new IllegalArgumentException("Maximum length " + maxLength +
+					 " is not positive");
+    byteAlphabet = counter.isByteAlphabet();
+    findFrequencies(counter);
+    int n = symbols.length;
+    if (maxLength < 31 && 1 << maxLength < n)
+      throw new IllegalArgumentException("Maximum length " + maxLength +
+					 " is too small for " + n + 
+					 " symbols");
+    lengthLimit = maxLength;
+    buildCanonicalTree(findLimitedLengths(maxLength));
+    generateEncodings();
+  }
+
+  /**
+   * Constructs a HuffmanTree having canonical codes with the code lengths 
+   * given in the form returned by getCodeLengthTable.  Because the table
+   * contains no counts, getCount returns 0 for every symbol of the 
+   * resulting tree.
+   * @param table  The symbols and their code lengths.
+   * @param bytes  If <tt>true</tt>, the symbols are bytes; otherwise, they
+   *               are characters.
+   * @throws IllegalArgumentException  If the symbols are not in strictly
+   *                                   ascending order or are out of range,
+   *                                   or if the lengths do not describe a
+   *                                   complete prefix code.
+   */
+  public HuffmanTree(int[] table, boolean bytes) 
+    throws IllegalArgumentException {
+    if (table.length % 2 != 0) 
+      throw new IllegalArgumentException("Odd table length");
+    int n = table.length / 2;
+    int[] syms = new int[n];
+    int[] lengths = new int[n];
+    int limit = bytes ? FrequencyCounter.BYTE_ALPHABET_SIZE 
+      : FrequencyCounter.CHAR_ALPHABET_SIZE;
+    for (int i = 0; i < n; i++) {
+      syms[i] = table[2*i];
+      lengths[i] = table[2*i + 1];
+      if (syms[i] < 0 || syms[i] >= limit || (i > 0 && syms[i] <= syms[i-1]))
+	throw new IllegalArgumentException("Bad symbol: " + syms[i]);
+    }
+    byteAlphabet = bytes;
+    allocate(syms, new long[n]);
+    buildCanonicalTree(lengths);
+    generateEncodings();
+  }
+
+  /**
+   * Constructs a HuffmanTree from the characters read from the given Reader
+   * until end of stream.  The input is counted as it is read, so it is
+   * never held in memory as a whole.  The Reader is not closed.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public HuffmanTree(Reader in) throws IOException {
+    this(count(in));
+  }
+
+  /**
+   * Constructs a HuffmanTree from the characters decoded from the given
+   * InputStream using the given Charset.  The InputStream is not closed.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public HuffmanTree(InputStream in, Charset cs) throws IOException {
+    this(new InputStreamReader(in, cs));
+  }
+
+  /**
+   * Constructs a HuffmanTree from the contents of the given file, decoded
+   * using the given Charset.  Large files are counted in parallel using
+   * a ParallelCounter.
+   * @throws IOException  If the file cannot be read.
+   */
+  public HuffmanTree(Path p, Charset cs) throws IOException {
+    this(ParallelCounter.count(p, cs));
+  }
+
+  /**
+   * Constructs a HuffmanTree from the contents of the given file, decoded
+   * using the platform's default Charset.
+   * @throws IOException  If the file cannot be read.
+   */
+  public HuffmanTree(Path p) throws IOException {
+    this(p, Charset.defaultCharset());
+  }
+
+  /**
+   * Returns a HuffmanTree over the byte alphabet built from the given
+   * bytes.
+   */
+  public static HuffmanTree fromBytes(byte[] b) {
+    return new HuffmanTree(count(b));
+  }
+
+  /**
+   * Returns a HuffmanTree over the byte alphabet built from the bytes read
+   * from the given InputStream until end of stream.  The bytes are not
+   * decoded; to count characters, use HuffmanTree(InputStream, Charset).
+   * The InputStream is not closed.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public static HuffmanTree fromBytes(InputStream in) throws IOException {
+    return new HuffmanTree(count(in));
+  }
+
+  /**
+   * Returns <tt>true</tt> if the symbols of this tree are bytes rather
+   * than characters.
+   */
+  public boolean isByteAlphabet() {
+    return byteAlphabet;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the codes of this tree are canonical.  In a
+   * canonical code, the codes of each length are consecutive binary numbers
+   * assigned in order of symbol, and shorter codes precede longer ones, so
+   * the codes are determined by the code lengths alone.
+   */
+  public boolean isCanonical() {
+    return canonical;
+  }
+
+  /**
+   * Returns a HuffmanTree having the same symbols, counts and code lengths
+   * as this one, but canonical codes.
+   */
+  public HuffmanTree getCanonical() {
+    if (canonical) return this;
+    return new HuffmanTree(this);
+  }
+
+  /**
+   * Returns the maximum code length imposed when this tree was built, or 0
+   * if none was imposed.
+   */
+  public int getLengthLimit() {
+    return lengthLimit;
+  }
+
+  /**
+   * Returns the length of the longest code.
+   */
+  public int getMaxCodeLength() {
+    ensureBuilt();
+    int max = 0;
+    for (int i = 0; i < codeLengths.length; i++)
+      max = Math.max(max, codeLengths[i]);
+    return max;
+  }
+
+  /**
+   * Returns the total number of symbols in the input from which this tree
+   * was built; i.e., the weight of the root.
+   */
+  public long getWeight() {
+    long w = 0;
+    for (int i = 0; i < symbols.length; i++) w += weight[i];
+    return w;
+  }
+
+  /**
+   * Returns the number of bits in the encoding of the input from which
+   * this tree was built.
+   */
+  public long getEncodedLength() {
+    ensureBuilt();
+    long bits = 0;
+    for (int i = 0; i < codeLengths.length; i++)
+      bits += weight[i] * codeLengths[i];
+    return bits;
+  }
+
+  /**
+   * Returns the number of bits in the encoding of the input from which
+   * this tree was built using an unrestricted Huffman code.  This differs
+   * from getEncodedLength only when a length limit has been imposed.
+   */
+  public long getUnlimitedEncodedLength() {
+    if (lengthLimit == 0) return getEncodedLength();
+    // The encoded length is the sum of the weights of the internal nodes.
+    int n = symbols.length;
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    RadixSort.sort(order, weight);
+    long[] merged = new long[Math.max(n - 1, 0)];
+    int nextLeaf = 0;
+    int nextMerged = 0;
+    long bits = 0;
+    for (int m = 0; m < n - 1; m++) {
+      long w = 0;
+      for (int k = 0; k < 2; k++) {
+	if (nextMerged == m || (nextLeaf < n && weight[order[nextLeaf]] <= 
+				merged[nextMerged]))
+	  w += weight[order[nextLeaf++]];
+	else w += merged[nextMerged++];
+      }
+      merged[m] = w;
+      bits += w;
+    }
+    return bits;
+  }
+
+  /**
+   * Returns the code length table of this tree: the symbols in ascending
+   * order, each followed by the length of its code.  A HuffmanTree with
+   * canonical codes can be rebuilt from this table.
+   */
+  public int[] getCodeLengthTable() {
+    ensureBuilt();
+    int[] table = new int[2*symbols.length];
+    for (int i = 0; i < symbols.length; i++) {
+      table[2*i] = symbols[i];
+      table[2*i + 1] = codeLengths[i];
+    }
+    return table;
   }
 
   /**
@@ -61,18 +450,30 @@ public class HuffmanTree implements Serializable {
    * No particular ordering of the Characters is guaranteed.
    */
   public Character[] getCharacters() {
-    Character[] c = new Character[characters.size()];
-    return characters.toArray(c);
+    Character[] c = new Character[symbols.length];
+    for (int i = 0; i < c.length; i++)
+      c[i] = Character.valueOf((char) symbols[i]);
+    return c;
   }
 
   /**
    * Returns the number of occurrences of the given Character in the
    * encoded String.
+   * @throws ArithmeticException  If the number does not fit in an int; use
+   *                              getLongCount for any number.
+   */
+  public int getCount(Character c) throws ArithmeticException {
+    return Math.toIntExact(getLongCount(c));
+  }
+
+  /**
+   * Returns the number of occurrences of the given Character in the
+   * encoded String as a long.
    */
-  public int getCount(Character c) {
-    Integer i = frequencies.get(c);
-    if (i == null) return 0;
-    else return i.intValue();
+  public long getLongCount(Character c) {
+    int i = Arrays.binarySearch(symbols, c.charValue());
+    if (i < 0) return 0;
+    else return weight[i];
   }
 
   /**
@@ -81,21 +482,131 @@ public class HuffmanTree implements Serializable {
    * returned.
    */
   public String getEncoding(Character c) {
-    return encodings.get(c);
+    int i = Arrays.binarySearch(symbols, c.charValue());
+    if (i < 0) return null;
+    ensureBuilt();
+    return getEncoding(i);
+  }
+
+  /**
+   * Returns a HuffmanEncoder for the codes of this tree.
+   */
+  public synchronized HuffmanEncoder getEncoder() {
+    ensureBuilt();
+    if (encoder == null) encoder = new HuffmanEncoder(this);
+    return encoder;
+  }
+
+  /**
+   * Returns a HuffmanDecoder for the codes of this tree.
+   */
+  public synchronized HuffmanDecoder getDecoder() {
+    ensureBuilt();
+    if (decoder == null) decoder = new HuffmanDecoder(this);
+    return decoder;
+  }
+
+  /**
+   * Returns the number of leaves.
+   */
+  int getSymbolCount() {
+    return symbols.length;
+  }
+
+  /**
+   * Returns the symbol of leaf i.
+   */
+  int getSymbol(int i) {
+    return symbols[i];
+  }
+
+  /**
+   * Returns the code length of leaf i.
+   */
+  int getCodeLength(int i) {
+    ensureBuilt();
+    return codeLengths[i];
+  }
+
+  /**
+   * Returns the left child of node i, or -1 if node i is a leaf.
+   */
+  int getLeft(int i) {
+    ensureBuilt();
+    return left[i];
+  }
+
+  /**
+   * Returns the right child of node i, or -1 if node i is a leaf.
+   */
+  int getRight(int i) {
+    ensureBuilt();
+    return right[i];
+  }
+
+  /**
+   * Returns the number of nodes.
+   */
+  int getNodeCount() {
+    return weight.length;
+  }
+
+  /**
+   * Returns the label of node i when the tree is drawn: its symbol if it is
+   * a leaf, or its count otherwise.
+   */
+  String getNodeLabel(int i) {
+    ensureBuilt();
+    return left[i] < 0 ? getLabel(symbols[i]) : String.valueOf(weight[i]);
+  }
+
+  /**
+   * Returns the code of leaf i, whose length must be at most 64.
+   */
+  long getCode(int i) {
+    ensureBuilt();
+    return codes[i];
+  }
+
+  /**
+   * Returns the code of leaf i, whose length must be more than 64.
+   */
+  BitSet getLongCode(int i) {
+    ensureBuilt();
+    return longCodes[i];
   }
 
   /**
    * Returns a drawing of the tree.
    */
   public TreeComponent getDrawing() {
-    return theTree.getDrawing();
+    return getBinaryTree().getDrawing();
   }
 
   /**
    * Returns a drawing of the tree using the given Font.
    */
   public TreeComponent getDrawing(Font f) {
-    return theTree.getDrawing(f);
+    return getBinaryTree().getDrawing(f);
+  }
+
+  /**
+   * Returns the layout of the tree as drawn by a TreeView, computing it if
+   * necessary.  This method may be called from any thread.
+   */
+  synchronized TreeLayout getLayout() {
+    ensureBuilt();
+    if (layout == null) layout = new TreeLayout(this);
+    return layout;
+  }
+
+  /**
+   * Lays out the tree displayed by a TreeView, if it has not yet been laid
+   * out, so that it can later be displayed quickly.  This method may be
+   * called from any thread.
+   */
+  void prepareDrawing() {
+    getLayout();
   }
 
   /**
@@ -103,69 +614,895 @@ public class HuffmanTree implements Serializable {
    * guaranteed.
    */
   public FrequencyTableEntry[] getFrequencyTable() {
+    ensureBuilt();
     FrequencyTableEntry[] theTable = 
-      new FrequencyTableEntry[characters.size()];
+      new FrequencyTableEntry[symbols.length];
     for (int i = 0; i < theTable.length; i++) {
-      Character c = characters.elementAt(i);
-      theTable[i] = 
-	new FrequencyTableEntry(c, 
-				frequencies.get(c).intValue(),
-				encodings.get(c));
+      Character c = Character.valueOf((char) symbols[i]);
+      theTable[i] = new FrequencyTableEntry(c, weight[i], getEncoding(i));
     }
     return theTable;
   }
 
   /**
-   * Finds the frequencies of the characters in the given String.
+   * Writes this tree to the given DataOutput in a compact binary format,
+   * from which read reconstructs it.  Only the symbols, their counts, and
+   * as much of the shape as cannot be recomputed are written; the codes,
+   * encoder, decoder and drawing are rebuilt as needed.  The format is:
+   * <ul>
+   * <li>the byte FORMAT_VERSION;
+   * <li>the number of bytes that follow, as an int;
+   * <li>a byte of flags giving the kind of shape, whether the symbols are
+   *     bytes, and whether counts follow;
+   * <li>the length limit and the number of symbols n;
+   * <li>the symbols, each as its difference from the one before, less 1;
+   * <li>the counts, unless they are all 0;
+   * <li>for a canonical tree, the code lengths; for a tree built from its
+   *     counts, nothing; and for any other tree, one bit per node in
+   *     preorder telling whether it is internal, padded to a whole byte,
+   *     followed by the index of each leaf in preorder.
+   * </ul>
+   * All numbers after the flags are unsigned variable-length integers 
+   * holding 7 bits per byte, least significant first, with the high bit
+   * set on all bytes but the last.  A tree of a few dozen characters built
+   * from its counts thus takes a few bytes per symbol.  The data are
+   * encoded in memory, then written with a single call, which is much
+   * faster than writing them a byte at a time to a DataOutputStream.
+   * Writing a tree does not build its shape or codes if read has not.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void write(DataOutput out) throws IOException {
+    int n = symbols.length;
+    int nodes = weight.length;
+    int shape = canonical ? CANONICAL_SHAPE 
+      : builtFromCounts ? BUILT_SHAPE : EXPLICIT_SHAPE;
+    boolean hasCounts = false;
+    for (int i = 0; i < n && !hasCounts; i++) hasCounts = weight[i] != 0;
+    // Each symbol takes at most 3 bytes, 9 for its count, and 3 for its
+    // code length or leaf index.
+    ByteBuffer b = ByteBuffer.allocate(16 + 15*n + (nodes + 7) / 8);
+    b.put((byte) FORMAT_VERSION);
+    b.putInt(0); // The length, filled in below
+    b.put((byte) (shape | (byteAlphabet ? BYTES_FLAG : 0) 
+		  | (hasCounts ? COUNTS_FLAG : 0)));
+    putNumber(b, lengthLimit);
+    putNumber(b, n);
+    int previous = -1;
+    for (int i = 0; i < n; i++) {
+      putNumber(b, symbols[i] - previous - 1);
+      previous = symbols[i];
+    }
+    if (hasCounts) {
+      for (int i = 0; i < n; i++) putNumber(b, weight[i]);
+    }
+    if (shape == CANONICAL_SHAPE) {
+      for (int i = 0; i < n; i++) putNumber(b, codeLengths[i]);
+    }
+    else if (shape == EXPLICIT_SHAPE && n > 0) {
+      byte[] bits = new byte[(nodes + 7) / 8];
+      int[] leaves = new int[n];
+      int[] stack = new int[nodes];
+      int top = 0;
+      int leafCount = 0;
+      stack[top++] = nodes - 1;
+      for (int k = 0; top > 0; k++) {
+	int v = stack[--top];
+	if (left[v] < 0) leaves[leafCount++] = v;
+	else {
+	  bits[k / 8] = (byte) (bits[k / 8] | 0x80 >>> (k % 8));
+	  stack[top++] = right[v];
+	  stack[top++] = left[v];
+	}
+      }
+      b.put(bits);
+      for (int i = 0; i < n; i++) putNumber(b, leaves[i]);
+    }
+    b.putInt(1, b.position() - 5);
+    out.write(b.array(), 0, b.position());
+  }
+
+  /**
+   * Reads a HuffmanTree written by write from the given DataInput.  Unless
+   * the tree was given node by node, only its symbols, counts and code 
+   * lengths are kept; its shape and codes are built when first needed.
+   * @throws IOException  If an I/O error occurs, or if the data were not
+   *                      written by write in a supported version.
+   */
+  public static HuffmanTree read(DataInput in) throws IOException {
+    int version = in.readUnsignedByte();
+    if (version != FORMAT_VERSION) 
+      throw new IOException("Unsupported format version: " + version);
+    int length = in.readInt();
+    if (length < 0 || length > MAX_FORMAT_LENGTH)
+      throw new IOException("Bad length: " + length);
+    byte[] data = new byte[length];
+    in.readFully(data);
+    ByteBuffer b = ByteBuffer.wrap(data);
+    try {
+      HuffmanTree t = read(b);
+      if (b.hasRemaining()) throw new IOException("Unexpected data");
+      return t;
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException("Truncated tree", e);
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("Invalid tree: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads a HuffmanTree from the data written by write following the
+   * length.
+   * @throws IOException  If the data are invalid.
+   * @throws BufferUnderflowException  If the data are incomplete.
+   * @throws IllegalArgumentException  If the tree is invalid.
+   */
+  private static HuffmanTree read(ByteBuffer b) 
+    throws IOException, BufferUnderflowException, IllegalArgumentException {
+    int flags = b.get() & 0xFF;
+    int shape = flags & SHAPE_MASK;
+    if (shape > EXPLICIT_SHAPE || (flags & ~(SHAPE_MASK | BYTES_FLAG 
+					     | COUNTS_FLAG)) != 0)
+      throw new IOException("Bad flags: " + flags);
+    boolean bytes = (flags & BYTES_FLAG) != 0;
+    int alphabet = bytes ? FrequencyCounter.BYTE_ALPHABET_SIZE 
+      : FrequencyCounter.CHAR_ALPHABET_SIZE;
+    int limit = getInt(b, Integer.MAX_VALUE);
+    int n = getInt(b, alphabet);
+    int[] syms = new int[n];
+    int previous = -1;
+    for (int i = 0; i < n; i++) {
+      syms[i] = previous + 1 + getInt(b, alphabet - previous - 2);
+      previous = syms[i];
+    }
+    long[] counts = new long[n];
+    if ((flags & COUNTS_FLAG) != 0) {
+      for (int i = 0; i < n; i++) counts[i] = getNumber(b);
+    }
+    else if (shape == BUILT_SHAPE && n > 1) 
+      throw new IOException("Missing counts");
+    if (shape == BUILT_SHAPE) 
+      return new HuffmanTree(bytes, syms, counts, null, limit);
+    if (shape == CANONICAL_SHAPE) {
+      int[] lengths = new int[n];
+      for (int i = 0; i < n; i++) lengths[i] = getInt(b, n - 1);
+      checkLengths(lengths);
+      return new HuffmanTree(bytes, syms, counts, lengths, limit);
+    }
+    HuffmanTree t = readShape(b, bytes, syms, counts);
+    t.lengthLimit = limit;
+    return t;
+  }
+
+  /**
+   * Reads the shape of a tree written by write, numbering the nodes in
+   * preorder, and constructs the tree.
+   * @throws IOException  If the shape is invalid.
+   * @throws BufferUnderflowException  If the data are incomplete.
    */
-  private void findFrequencies(String s) {
-    for (int i = 0; i < s.length(); i++) {
-      int f = 0;
-      Character c = Character.valueOf(s.charAt(i));
-      Integer entry = frequencies.get(c);
-      if (entry == null) characters.add(c);
-      else f = entry.intValue();
-      frequencies.put(c, Integer.valueOf(++f));
+  private static HuffmanTree readShape(ByteBuffer b, boolean bytes, 
+				       int[] syms, long[] counts)
+    throws IOException, BufferUnderflowException {
+    int n = syms.length;
+    if (n == 0) return new HuffmanTree(bytes, -1, null, null, null, null);
+    int nodes = 2*n - 1;
+    byte[] bits = new byte[(nodes + 7) / 8];
+    b.get(bits);
+    int[] lefts = new int[nodes];
+    int[] rights = new int[nodes];
+    int[] nodeSyms = new int[nodes];
+    long[] nodeCounts = new long[nodes];
+    boolean[] seen = new boolean[n];
+    // The internal nodes whose right children have yet to be read.
+    int[] stack = new int[nodes];
+    int top = 0;
+    for (int k = 0; k < nodes; k++) {
+      if (k > 0) {
+	if (top == 0) throw new IOException("Bad tree shape");
+	int p = stack[top - 1];
+	if (lefts[p] < 0) lefts[p] = k;
+	else {
+	  rights[p] = k;
+	  top--;
+	}
+      }
+      lefts[k] = rights[k] = -1;
+      if ((bits[k / 8] & 0x80 >>> (k % 8)) != 0) stack[top++] = k;
+    }
+    if (top != 0) throw new IOException("Bad tree shape");
+    for (int k = 0; k < nodes; k++) {
+      if (lefts[k] < 0) {
+	int i = getInt(b, n - 1);
+	if (seen[i]) throw new IOException("Repeated leaf: " + i);
+	seen[i] = true;
+	nodeSyms[k] = syms[i];
+	nodeCounts[k] = counts[i];
+      }
     }
+    return new HuffmanTree(bytes, 0, lefts, rights, nodeSyms, nodeCounts);
+  }
+
+  /**
+   * Replaces this tree, when serialized, by a SerializedForm, which writes
+   * it in the format of write.
+   */
+  private Object writeReplace() {
+    return new SerializedForm(this);
+  }
+
+  /**
+   * Rejects a serialized HuffmanTree not written as a SerializedForm.
+   * @throws InvalidObjectException  Always.
+   */
+  private void readObject(ObjectInputStream in) 
+    throws InvalidObjectException {
+    throw new InvalidObjectException("SerializedForm required");
+  }
+
+  /**
+   * Constructs a HuffmanTree with canonical codes having the same symbols,
+   * counts and code lengths as the given tree.
+   */
+  private HuffmanTree(HuffmanTree t) {
+    t.ensureBuilt();
+    byteAlphabet = t.byteAlphabet;
+    allocate(t.symbols, Arrays.copyOf(t.weight, t.symbols.length));
+    buildCanonicalTree(t.codeLengths);
+    generateEncodings();
+  }
+
+  /**
+   * Constructs a HuffmanTree from the given leaves, already sorted, by
+   * merging with two queues.  The arrays are not copied.
+   * @param bytes   Whether the symbols are bytes.
+   * @param syms    The symbols, in ascending order.
+   * @param counts  The count of each symbol.
+   * @param order   The indices of the symbols in order of count, with
+   *                equal counts in order of symbol.
+   */
+  HuffmanTree(boolean bytes, int[] syms, long[] counts, int[] order) {
+    byteAlphabet = bytes;
+    allocate(syms, counts);
+    buildTreeFromSorted(order);
+    builtFromCounts = true;
+    generateEncodings();
+  }
+
+  /**
+   * Constructs a HuffmanTree whose shape and codes are built when first
+   * needed: the canonical tree for the given code lengths, or if they are
+   * null, the tree built from the counts.  The symbols and lengths are not
+   * copied.
+   * @param bytes    Whether the symbols are bytes.
+   * @param syms     The symbols, in ascending order.
+   * @param counts   The count of each symbol.
+   * @param lengths  The code length of each symbol, which must describe a
+   *                 complete prefix code, or null.
+   * @param limit    The maximum code length imposed, or 0 if none was.
+   */
+  private HuffmanTree(boolean bytes, int[] syms, long[] counts, int[] lengths,
+		      int limit) {
+    byteAlphabet = bytes;
+    lengthLimit = limit;
+    symbols = syms;
+    weight = Arrays.copyOf(counts, Math.max(2*syms.length - 1, 0));
+    if (lengths == null) builtFromCounts = true;
+    else {
+      canonical = true;
+      codeLengths = lengths;
+    }
+    pending = true;
+  }
+
+  /**
+   * Builds the shape and codes of a tree read by read, if they have not
+   * yet been built.
+   */
+  private void ensureBuilt() {
+    if (pending) build();
+  }
+
+  /**
+   * Builds the shape and codes of a tree read by read from its code
+   * lengths or counts.  The weights of the leaves are left in place, so
+   * getCount may be called meanwhile.
+   */
+  private synchronized void build() {
+    if (!pending) return;
+    allocateNodes();
+    if (canonical) buildCanonicalTree(codeLengths);
+    else buildTreeFromSorted();
+    generateEncodings();
+    pending = false;
+  }
+
+  /**
+   * Constructs a HuffmanTree having the same symbols, shape and codes as
+   * the given tree, but the given counts.  The arrays describing the shape
+   * and codes, and the encoder and decoder if they have been built, are
+   * shared rather than copied.  If the counts are those of the given tree,
+   * the new tree is written as built from them, like the given tree.
+   * @param t       The tree.
+   * @param counts  The count of each of its symbols, in ascending order of
+   *                symbol.
+   */
+  HuffmanTree(HuffmanTree t, long[] counts) {
+    t.ensureBuilt();
+    byteAlphabet = t.byteAlphabet;
+    symbols = t.symbols;
+    left = t.left;
+    right = t.right;
+    parent = t.parent;
+    codeLengths = t.codeLengths;
+    codes = t.codes;
+    longCodes = t.longCodes;
+    canonical = t.canonical;
+    lengthLimit = t.lengthLimit;
+    int n = symbols.length;
+    builtFromCounts = t.builtFromCounts 
+      && Arrays.equals(counts, 0, n, t.weight, 0, n);
+    weight = Arrays.copyOf(counts, left.length);
+    for (int i = n; i < weight.length; i++) 
+      weight[i] = weight[left[i]] + weight[right[i]];
+    synchronized (t) {
+      encoder = t.encoder;
+      decoder = t.decoder;
+    }
+  }
+
+  /**
+   * Returns <tt>true</tt> if the given tree has the same symbols as this
+   * one, with the same code lengths.
+   */
+  boolean hasSameLengths(HuffmanTree t) {
+    ensureBuilt();
+    t.ensureBuilt();
+    return Arrays.equals(symbols, t.symbols) 
+      && Arrays.equals(codeLengths, t.codeLengths);
+  }
+
+  /**
+   * Constructs a HuffmanTree having the shape of the given tree, whose
+   * nodes may be numbered in any order.  The leaves are renumbered in order
+   * of symbol and the internal nodes in postorder, so that each has a
+   * larger index than its children.
+   * @param bytes   Whether the symbols are bytes.
+   * @param root    The root, or -1 if the tree is empty.
+   * @param lefts   The left child of each node, or -1 for a leaf.
+   * @param rights  The right child of each node.
+   * @param syms    The symbol at each leaf.
+   * @param counts  The weight of each leaf.
+   */
+  HuffmanTree(boolean bytes, int root, int[] lefts, int[] rights,
+	      int[] syms, long[] counts) {
+    byteAlphabet = bytes;
+    if (root < 0) {
+      allocate(new int[0], new long[0]);
+      generateEncodings();
+      return;
+    }
+    // Visit root, right subtree, left subtree; reversed, this is postorder.
+    int[] order = new int[lefts.length];
+    int[] stack = new int[lefts.length];
+    int count = 0;
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      int v = stack[--top];
+      order[count++] = v;
+      if (lefts[v] >= 0) {
+	stack[top++] = lefts[v];
+	stack[top++] = rights[v];
+      }
+    }
+    int n = (count + 1) / 2;
+    long[] keys = new long[n];
+    int k = 0;
+    for (int i = 0; i < count; i++) {
+      int v = order[i];
+      if (lefts[v] < 0) keys[k++] = (long) syms[v] << 32 | v;
+    }
+    Arrays.sort(keys);
+    int[] index = new int[lefts.length];
+    int[] s = new int[n];
+    long[] w = new long[n];
+    for (int i = 0; i < n; i++) {
+      int v = (int) keys[i];
+      index[v] = i;
+      s[i] = syms[v];
+      w[i] = counts[v];
+    }
+    allocate(s, w);
+    int m = n;
+    for (int i = count - 1; i >= 0; i--) {
+      int v = order[i];
+      if (lefts[v] >= 0) {
+	index[v] = m;
+	merge(m++, index[lefts[v]], index[rights[v]]);
+      }
+    }
+    generateEncodings();
+  }
+
+  /**
+   * Counts the characters in the given String.
+   */
+  private static FrequencyCounter count(String s) {
+    FrequencyCounter counter = new FrequencyCounter();
+    counter.add(s);
+    return counter;
+  }
+
+  /**
+   * Counts the characters read from the given Reader.
+   */
+  private static FrequencyCounter count(Reader in) throws IOException {
+    FrequencyCounter counter = new FrequencyCounter();
+    counter.add(in);
+    return counter;
+  }
+
+  /**
+   * Counts the given bytes.
+   */
+  private static FrequencyCounter count(byte[] b) {
+    FrequencyCounter counter = new FrequencyCounter(true);
+    counter.add(b, 0, b.length);
+    return counter;
+  }
+
+  /**
+   * Counts the bytes read from the given InputStream.
+   */
+  private static FrequencyCounter count(InputStream in) throws IOException {
+    FrequencyCounter counter = new FrequencyCounter(true);
+    counter.add(in);
+    return counter;
+  }
+
+  /**
+   * Records the symbols counted by the given FrequencyCounter as the leaves
+   * of the tree, in ascending order, and allocates the node arrays.
+   */
+  private void findFrequencies(FrequencyCounter counter) {
+    int[] syms = counter.getSymbols();
+    long[] counts = new long[syms.length];
+    for (int i = 0; i < syms.length; i++) 
+      counts[i] = counter.getCount(syms[i]);
+    allocate(syms, counts);
+  }
+
+  /**
+   * Records the given symbols, in ascending order, as the leaves of the
+   * tree, with the given counts as their weights, and allocates the node
+   * arrays.
+   */
+  private void allocate(int[] syms, long[] counts) {
+    symbols = syms;
+    weight = Arrays.copyOf(counts, Math.max(2*syms.length - 1, 0));
+    allocateNodes();
+  }
+
+  /**
+   * Allocates the arrays of children and parents for the recorded leaves,
+   * with no internal nodes yet merged.
+   */
+  private void allocateNodes() {
+    int n = symbols.length;
+    int nodes = weight.length;
+    left = new int[nodes];
+    right = new int[nodes];
+    parent = new int[nodes];
+    Arrays.fill(left, 0, n, -1);
+    Arrays.fill(right, 0, n, -1);
+    if (n > 0) parent[nodes - 1] = -1;
+  }
+
+  /**
+   * Checks that the given code lengths, indexed by leaf, describe a
+   * complete prefix code, as buildCanonicalTree requires.
+   * @throws IllegalArgumentException  If they do not.
+   */
+  private static void checkLengths(int[] lengths) 
+    throws IllegalArgumentException {
+    int n = lengths.length;
+    if (n == 0) return;
+    int maxLength = 0;
+    for (int i = 0; i < n; i++) {
+      if (lengths[i] < 0 || (lengths[i] == 0 && n > 1))
+	throw new IllegalArgumentException("Bad code length: " + lengths[i]);
+      maxLength = Math.max(maxLength, lengths[i]);
+    }
+    int[] count = new int[maxLength + 1];
+    for (int i = 0; i < n; i++) count[lengths[i]]++;
+    // The number of nodes at each level, from the deepest up.
+    long below = 0;
+    for (int d = maxLength; d >= 0; d--) {
+      if (below % 2 != 0) throw new IllegalArgumentException(BAD_LENGTHS);
+      below = count[d] + below / 2;
+    }
+    if (below != 1) throw new IllegalArgumentException(BAD_LENGTHS);
+  }
+
+  /**
+   * Makes node m the parent of nodes l and r.
+   */
+  private void merge(int m, int l, int r) {
+    left[m] = l;
+    right[m] = r;
+    parent[l] = m;
+    parent[r] = m;
+    weight[m] = weight[l] + weight[r];
   }
 
   /**
    * Builds the tree.  Assumes the frequency table has been constructed.
+   * Merged trees are numbered n, n + 1, ... in the order they are created;
+   * the PriorityQueue uses the node numbers to break ties.
    */
   private void buildTree() {
-    PriorityQueue q = new PriorityQueue();
-    Enumeration<Character> e = characters.elements();
-    while (e.hasMoreElements()) {
-      Character c = e.nextElement();
-      int f = frequencies.get(c).intValue();
-      q.put(f, new BinaryTree(new Node(String.valueOf(c)), 
-			      null, null));
-    }
-    BinaryTree empty = new BinaryTree();
+    int n = symbols.length;
+    if (n == 0) return;
+    long[] keys = Arrays.copyOf(weight, n);
+    int[] elements = new int[n];
+    for (int i = 0; i < n; i++) elements[i] = i;
+    PriorityQueue q = new PriorityQueue(keys, elements, n);
+    int next = n;
     while (q.size() > 1) {
-      int c1 = q.minKey();
-      BinaryTree t1 = (BinaryTree) q.removeMin();
-      int c2 = q.minKey();
-      BinaryTree t2 = (BinaryTree) q.removeMin();
-      q.put(c1 + c2, new BinaryTree(new Node(String.valueOf(c1 + c2)), 
-				    t1, t2));
+      int t1 = q.removeMin();
+      int t2 = q.removeMin();
+      merge(next, t1, t2);
+      q.put(weight[next], next++);
+    }
+  }
+
+  /**
+   * Builds the tree by sorting the leaves, then merging with two queues.
+   * Assumes the frequency table has been constructed.  Ties are broken as in
+   * buildTree: leaves precede merged trees of equal weight, leaves of equal
+   * weight are taken in order of symbol, and merged trees are taken in the
+   * order they were created.  The resulting tree is therefore identical to
+   * the one built by buildTree.
+   */
+  private void buildTreeFromSorted() {
+    int n = symbols.length;
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    RadixSort.sort(order, weight);
+    buildTreeFromSorted(order);
+  }
+
+  /**
+   * Builds the tree by merging with two queues, given the leaves in order
+   * of weight, with leaves of equal weight in order of symbol.
+   */
+  private void buildTreeFromSorted(int[] order) {
+    int n = symbols.length;
+    int nextLeaf = 0;
+    int nextMerged = n;
+    int[] t = new int[2];
+    for (int m = n; m < 2*n - 1; m++) {
+      for (int k = 0; k < 2; k++) {
+	if (nextMerged == m || (nextLeaf < n && weight[order[nextLeaf]] <= 
+				weight[nextMerged])) 
+	  t[k] = order[nextLeaf++];
+	else t[k] = nextMerged++;
+      }
+      merge(m, t[0], t[1]);
+    }
+  }
+
+  /**
+   * Returns the code lengths, indexed by leaf, of an optimal code whose
+   * lengths do not exceed the given maximum, found by package-merge.  
+   * Assumes the frequency table has been constructed.  The leaves, sorted
+   * by weight, are merged with the pairwise packages of the list for the
+   * level below to form the list for each level, from the deepest up.  The
+   * first 2n - 2 items of the top list are then selected.  The selected 
+   * items of every list form a prefix of it, and each selected package 
+   * selects its two items in the level below, so each list's selection is
+   * described by its length; each leaf's code length is the number of 
+   * lists in which it is selected.
+   */
+  private int[] findLimitedLengths(int maxLength) {
+    int n = symbols.length;
+    int[] lengths = new int[n];
+    if (n <= 1) return lengths;
+    int levels = Math.min(maxLength, n - 1);
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    RadixSort.sort(order, weight);
+    // isPackage[j][k] tells whether item k of the list for level j + 1 is
+    // a package.
+    boolean[][] isPackage = new boolean[levels][];
+    long[] below = new long[0];
+    int belowSize = 0;
+    long[] list = new long[2*n];
+    for (int j = levels - 1; j >= 0; j--) {
+      int packages = belowSize / 2;
+      isPackage[j] = new boolean[n + packages];
+      int size = 0;
+      int leaf = 0;
+      int pkg = 0;
+      while (leaf < n || pkg < packages) {
+	long pw = pkg < packages ? below[2*pkg] + below[2*pkg + 1] : 0;
+	if (pkg == packages || (leaf < n && weight[order[leaf]] <= pw)) 
+	  list[size++] = weight[order[leaf++]];
+	else {
+	  isPackage[j][size] = true;
+	  list[size++] = pw;
+	  pkg++;
+	}
+      }
+      long[] t = below;
+      below = list;
+      list = t.length >= 2*n ? t : new long[2*n];
+      belowSize = size;
+    }
+    int selected = 2*n - 2;
+    for (int j = 0; j < levels && selected > 0; j++) {
+      int packages = 0;
+      for (int k = 0; k < selected; k++) 
+	if (isPackage[j][k]) packages++;
+      for (int k = 0; k < selected - packages; k++) lengths[order[k]]++;
+      selected = 2*packages;
+    }
+    return lengths;
+  }
+
+  /**
+   * Builds the tree of the canonical code having the given code lengths,
+   * indexed by leaf.  The tree is built one level at a time, from the 
+   * deepest up.  Within each level, the leaves come first, in order of 
+   * symbol, followed by the internal nodes formed by pairing up the nodes 
+   * of the level below in order.  Generating the codes of this tree then 
+   * gives the canonical codes.
+   * @throws IllegalArgumentException  If the lengths do not describe a
+   *                                   complete prefix code.
+   */
+  private void buildCanonicalTree(int[] lengths) 
+    throws IllegalArgumentException {
+    canonical = true;
+    int n = symbols.length;
+    if (n == 0) return;
+    int maxLength = 0;
+    for (int i = 0; i < n; i++) {
+      if (lengths[i] < 0 || (lengths[i] == 0 && n > 1))
+	throw new IllegalArgumentException("Bad code length: " + lengths[i]);
+      maxLength = Math.max(maxLength, lengths[i]);
+    }
+    // Group the leaves by length, keeping them in order of symbol.
+    int[] start = new int[maxLength + 2];
+    for (int i = 0; i < n; i++) start[lengths[i] + 1]++;
+    for (int d = 0; d <= maxLength; d++) start[d + 1] += start[d];
+    int[] byLength = new int[n];
+    int[] next = Arrays.copyOf(start, maxLength + 1);
+    for (int i = 0; i < n; i++) byLength[next[lengths[i]]++] = i;
+    // The nodes of the level below the current one.
+    int[] below = new int[n];
+    int belowCount = 0;
+    int[] level = new int[n];
+    int m = n;
+    for (int d = maxLength; d >= 0; d--) {
+      if (belowCount % 2 != 0) 
+	throw new IllegalArgumentException(BAD_LENGTHS);
+      int levelCount = 0;
+      for (int k = start[d]; k < start[d + 1]; k++) 
+	level[levelCount++] = byLength[k];
+      if (levelCount + belowCount/2 > n)
+	throw new IllegalArgumentException(BAD_LENGTHS);
+      for (int k = 0; k < belowCount; k += 2) {
+	merge(m, below[k], below[k + 1]);
+	level[levelCount++] = m++;
+      }
+      int[] t = below;
+      below = level;
+      level = t;
+      belowCount = levelCount;
+    }
+    if (belowCount != 1) 
+      throw new IllegalArgumentException(BAD_LENGTHS);
+  }
+
+  /**
+   * Returns the tree as displayed by the viewer, building it if necessary.
+   * Each node is built after its children, so no recursion is needed.
+   */
+  private synchronized BinaryTree getBinaryTree() {
+    ensureBuilt();
+    if (theTree == null) {
+      int nodes = weight.length;
+      if (nodes == 0) theTree = new BinaryTree();
+      else {
+	BinaryTree[] trees = new BinaryTree[nodes];
+	for (int i = 0; i < nodes; i++) {
+	  if (left[i] < 0) trees[i] = newLeaf(symbols[i]);
+	  else {
+	    trees[i] = new BinaryTree(new Node(String.valueOf(weight[i])),
+				      trees[left[i]], trees[right[i]]);
+	    trees[left[i]] = null;
+	    trees[right[i]] = null;
+	  }
+	}
+	theTree = trees[nodes - 1];
+      }
+    }
+    return theTree;
+  }
+
+  /**
+   * Returns a new leaf containing the given symbol.
+   */
+  private BinaryTree newLeaf(int symbol) {
+    return new BinaryTree(new Node(getLabel(symbol), symbol), null, null);
+  }
+
+  /**
+   * Returns the label of the leaf containing the given symbol.
+   */
+  private String getLabel(int symbol) {
+    if (byteAlphabet) return String.format("%02x", symbol);
+    else return String.valueOf((char) symbol);
+  }
+
+  /**
+   * Generates the Huffman codes.  Assumes the tree has been built.  Because
+   * every node has a larger index than its children, visiting the nodes in
+   * decreasing order of index reaches each node after its parent, so each
+   * code is found from its parent's code without recursion or String
+   * concatenation.
+   */
+  private void generateEncodings() {
+    int n = symbols.length;
+    int nodes = weight.length;
+    int[] depth = new int[nodes];
+    long[] bits = new long[nodes];
+    BitSet[] deepBits = null;
+    for (int i = nodes - 1; i >= n; i--) {
+      int d = depth[i] + 1;
+      depth[left[i]] = d;
+      depth[right[i]] = d;
+      if (d <= 64) {
+	bits[left[i]] = bits[i] << 1;
+	bits[right[i]] = (bits[i] << 1) | 1;
+      }
+      else {
+	if (deepBits == null) deepBits = new BitSet[nodes];
+	BitSet b = deepBits[i];
+	if (b == null) b = toBitSet(bits[i], d - 1);
+	deepBits[left[i]] = b;
+	deepBits[right[i]] = (BitSet) b.clone();
+	deepBits[right[i]].set(d - 1);
+      }
     }
-    theTree = q.isEmpty() ? empty : (BinaryTree) q.removeMin();
+    codeLengths = Arrays.copyOf(depth, n);
+    codes = Arrays.copyOf(bits, n);
+    if (deepBits != null) {
+      longCodes = Arrays.copyOf(deepBits, n);
+      for (int i = 0; i < n; i++) 
+	if (codeLengths[i] <= 64) longCodes[i] = null;
+    }
+  }
+
+  /**
+   * Puts the given nonnegative number in the variable-length form used by
+   * write.
+   */
+  private static void putNumber(ByteBuffer b, long x) {
+    while ((x & ~0x7FL) != 0) {
+      b.put((byte) (x | 0x80));
+      x >>>= 7;
+    }
+    b.put((byte) x);
   }
 
   /**
-   * Generates the Huffman codes.  Assumes the tree has been built.
-   * @param tree   The subtree to be processed.
-   * @param prefix The prefix of the encoding leading to this subtree.
+   * Gets a nonnegative number in the variable-length form used by write.
+   * @throws IOException  If the number does not fit in a long.
+   * @throws BufferUnderflowException  If the data are incomplete.
    */
-  private void generateEncodings(BinaryTree tree, String prefix) {
-    if (tree.getLeftChild().isEmpty()) 
-      encodings.put(Character.valueOf(tree.getRoot().getContents().charAt(0)), 
-		    prefix);
+  private static long getNumber(ByteBuffer b) 
+    throws IOException, BufferUnderflowException {
+    long x = 0;
+    for (int shift = 0; shift < 63; shift += 7) {
+      int c = b.get() & 0xFF;
+      if (shift == 56 && c > 0x7F) break;
+      x |= (long) (c & 0x7F) << shift;
+      if (c < 0x80) return x;
+    }
+    throw new IOException("Number too large");
+  }
+
+  /**
+   * Gets a number in the variable-length form used by write, which must
+   * not exceed the given maximum.
+   * @throws IOException  If the number is too large.
+   * @throws BufferUnderflowException  If the data are incomplete.
+   */
+  private static int getInt(ByteBuffer b, int max) 
+    throws IOException, BufferUnderflowException {
+    long x = getNumber(b);
+    if (x > max) throw new IOException("Number out of range: " + x);
+    return (int) x;
+  }
+
+  /**
+   * Returns a BitSet containing the given code of the given length, with
+   * its first bit at index 0.
+   */
+  private static BitSet toBitSet(long code, int length) {
+    BitSet b = new BitSet(length + 1);
+    for (int k = 0; k < length; k++)
+      if ((code >>> (length - 1 - k) & 1) != 0) b.set(k);
+    return b;
+  }
+
+  /**
+   * Returns the Huffman code of leaf i as a String of '0's and '1's.
+   */
+  private String getEncoding(int i) {
+    int len = codeLengths[i];
+    char[] c = new char[len];
+    if (len <= 64) {
+      long code = codes[i];
+      for (int k = len - 1; k >= 0; k--) {
+	c[k] = (char) ('0' + (code & 1));
+	code >>>= 1;
+      }
+    }
     else {
-      generateEncodings(tree.getLeftChild(), prefix + '0');
-      generateEncodings(tree.getRightChild(), prefix + '1');
+      BitSet b = longCodes[i];
+      for (int k = 0; k < len; k++) c[k] = b.get(k) ? '1' : '0';
     }
+    return new String(c);
   }
-}
 
+  /**
+   * The serialized form of a HuffmanTree, which is written in the format of
+   * write rather than as the tree's fields.
+   */
+  private static class SerializedForm implements Serializable {
+
+    /**
+     * The tree.
+     */
+    private transient HuffmanTree tree;
+
+    /**
+     * Used for consistency in serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the SerializedForm of the given tree.
+     */
+    public SerializedForm(HuffmanTree t) {
+      tree = t;
+    }
+
+    /**
+     * Writes the tree.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+      out.defaultWriteObject();
+      tree.write(out);
+    }
+
+    /**
+     * Reads the tree.
+     */
+    private void readObject(ObjectInputStream in) 
+      throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      tree = read(in);
+    }
+
+    /**
+     * Returns the tree read.
+     */
+    private Object readResolve() {
+      return tree;
+    }
+  }
+}
@@ -0,0 +1,337 @@
+// File: ParallelCounter.java
+// Counts the characters or bytes in a file using several threads.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the characters in a file using several threads.  The file is
+ * memory-mapped and divided into chunks, each of which is decoded and
+ * counted into its own FrequencyCounter on a ForkJoinPool; the counters are
+ * then merged.  Chunk boundaries are moved so that they never fall inside
+ * an encoded character, so the result is exactly the same as counting the
+ * file sequentially.  This is only possible for UTF-8, UTF-16BE, UTF-16LE
+ * and single-byte Charsets; files in other Charsets, and small files, are
+ * counted sequentially.  Files may also be counted as raw bytes, in which
+ * case chunks may begin anywhere.
+ */
+public final class ParallelCounter {
+
+  /**
+   * The number of bytes in each chunk.
+   */
+  private static final int CHUNK_SIZE = 1 << 24;
+
+  /**
+   * The size below which a file is counted sequentially.
+   */
+  private static final long PARALLEL_THRESHOLD = 1 << 22;
+
+  /**
+   * The number of chars decoded at a time within a chunk.
+   */
+  private static final int DECODE_BUFFER_SIZE = 1 << 15;
+
+  /**
+   * The number of bytes counted between reports of progress.
+   */
+  private static final int PROGRESS_STEP = 1 << 20;
+
+  /**
+   * No instances are needed.
+   */
+  private ParallelCounter() {
+  }
+
+  /**
+   * Returns a FrequencyCounter containing the counts of the characters in
+   * the given file, decoded using the given Charset.
+   * @throws IOException  If the file cannot be read.
+   */
+  public static FrequencyCounter count(Path p, Charset cs)
+    throws IOException {
+    return count(p, cs, null);
+  }
+
+  /**
+   * Returns a FrequencyCounter over the byte alphabet containing the counts
+   * of the bytes in the given file.
+   * @throws IOException  If the file cannot be read.
+   */
+  public static FrequencyCounter count(Path p) throws IOException {
+    return count(p, null, null);
+  }
+
+  /**
+   * Returns a FrequencyCounter containing the counts of the characters in
+   * the given file, decoded using the given Charset, or of its bytes if the
+   * Charset is null.  The number of bytes read is recorded as work done by
+   * the given ProgressTracker, if it is not null.
+   * @throws java.util.concurrent.CancellationException
+   *                      If the ProgressTracker is cancelled.
+   * @throws IOException  If the file cannot be read.
+   */
+  public static FrequencyCounter count(Path p, Charset cs,
+				       ProgressTracker progress)
+    throws IOException {
+    try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (cs != null && (size < PARALLEL_THRESHOLD || alignment(cs) == 0)) {
+	FrequencyCounter counter = new FrequencyCounter();
+	if (progress == null) counter.add(p, cs);
+	else {
+	  try (InputStream in = new ProgressInputStream
+	       (Channels.newInputStream(ch), progress)) {
+	    counter.add(in, cs);
+	  }
+	}
+	return counter;
+      }
+      if (size < PARALLEL_THRESHOLD) {
+	return countChunk(ch, null, 0, size, progress);
+      }
+      long[] bounds = findBoundaries(ch, size, cs);
+      try {
+	return ForkJoinPool.commonPool().invoke
+	  (new CountTask(ch, cs, progress, bounds, 0, bounds.length - 1));
+      }
+      catch (UncheckedIOException e) {
+	throw e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes to which chunk boundaries must be aligned
+   * for the given Charset, or 0 if the Charset cannot be decoded in
+   * independent chunks.
+   */
+  private static int alignment(Charset cs) {
+    if (cs.equals(StandardCharsets.UTF_8)) return 1;
+    if (cs.equals(StandardCharsets.UTF_16BE)
+	|| cs.equals(StandardCharsets.UTF_16LE)) return 2;
+    if (cs.canEncode() && cs.newEncoder().maxBytesPerChar() == 1.0f) return 1;
+    return 0;
+  }
+
+  /**
+   * Divides the file into chunks.  The result contains the starting offset
+   * of each chunk, followed by the size of the file.
+   */
+  private static long[] findBoundaries(FileChannel ch, long size,
+				       Charset cs) throws IOException {
+    int n = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    long[] bounds = new long[n + 1];
+    ByteBuffer probe = ByteBuffer.allocate(5);
+    for (int i = 1; i < n; i++) {
+      long b = Math.max((long) i * CHUNK_SIZE, bounds[i - 1]);
+      probe.clear();
+      ch.read(probe, b - 2);
+      probe.flip();
+      bounds[i] = Math.min(b + skip(probe, cs), size);
+    }
+    bounds[n] = size;
+    return bounds;
+  }
+
+  /**
+   * Returns the number of bytes a chunk boundary must be moved forward so
+   * that it does not fall inside an encoded character.
+   * @param probe  The two bytes preceding the proposed boundary, followed by
+   *               up to three bytes following it.
+   * @param cs     The Charset, or null if bytes are being counted.
+   */
+  private static int skip(ByteBuffer probe, Charset cs) {
+    int lim = probe.limit();
+    if (cs == null) return 0;
+    else if (cs.equals(StandardCharsets.UTF_8)) {
+      // Skip at most three continuation bytes.
+      int i = 2;
+      while (i < lim && i < 5 && (probe.get(i) & 0xc0) == 0x80) i++;
+      return i - 2;
+    }
+    else if (cs.equals(StandardCharsets.UTF_16BE)) {
+      return Character.isHighSurrogate(probe.getChar(0)) ? 2 : 0;
+    }
+    else if (cs.equals(StandardCharsets.UTF_16LE)) {
+      char c = (char) ((probe.get(0) & 0xff) | (probe.get(1) & 0xff) << 8);
+      return Character.isHighSurrogate(c) ? 2 : 0;
+    }
+    else return 0;
+  }
+
+  /**
+   * Counts the characters in the given region of a file.  If the given
+   * Charset is null, the bytes are counted instead.  Progress is recorded
+   * if the given ProgressTracker is not null.
+   */
+  private static FrequencyCounter countChunk(FileChannel ch, Charset cs,
+					     long start, long end,
+					     ProgressTracker progress)
+    throws IOException {
+    FrequencyCounter counter = new FrequencyCounter(cs == null);
+    if (start == end) return counter;
+    MappedByteBuffer in =
+      ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    if (cs == null) {
+      int len = in.limit();
+      for (int pos = 0; pos < len; pos += PROGRESS_STEP) {
+	int n = Math.min(PROGRESS_STEP, len - pos);
+	counter.add(in.slice(pos, n));
+	if (progress != null) progress.add(n);
+      }
+      return counter;
+    }
+    CharsetDecoder dec = cs.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer out = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+    char[] buf = out.array();
+    CoderResult r;
+    do {
+      int pos = in.position();
+      r = dec.decode(in, out, true);
+      counter.add(buf, 0, out.position());
+      out.clear();
+      if (progress != null) progress.add(in.position() - pos);
+    } while (r.isOverflow());
+    while (dec.flush(out).isOverflow()) {
+      counter.add(buf, 0, out.position());
+      out.clear();
+    }
+    counter.add(buf, 0, out.position());
+    return counter;
+  }
+
+  /**
+   * Counts a range of chunks, splitting the range among subtasks.
+   */
+  private static class CountTask extends RecursiveTask<FrequencyCounter> {
+
+    /**
+     * The file.
+     */
+    private transient FileChannel channel;
+
+    /**
+     * The Charset, or null if bytes are being counted.
+     */
+    private transient Charset charset;
+
+    /**
+     * The ProgressTracker, or null.
+     */
+    private transient ProgressTracker progress;
+
+    /**
+     * The chunk boundaries.
+     */
+    private long[] bounds;
+
+    /**
+     * The first chunk to count.
+     */
+    private int first;
+
+    /**
+     * The index following the last chunk to count.
+     */
+    private int last;
+
+    /**
+     * Used for consistency in serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a task counting chunks first through last - 1.
+     */
+    public CountTask(FileChannel ch, Charset cs, ProgressTracker pt,
+		     long[] b, int first, int last) {
+      channel = ch;
+      charset = cs;
+      progress = pt;
+      bounds = b;
+      this.first = first;
+      this.last = last;
+    }
+
+    /**
+     * Counts the chunks.
+     */
+    protected FrequencyCounter compute() {
+      if (last - first == 1) {
+	try {
+	  return countChunk(channel, charset, bounds[first], bounds[last],
+			    progress);
+	}
+	catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+      }
+      int mid = (first + last) >>> 1;
+      CountTask right =
+	new CountTask(channel, charset, progress, bounds, mid, last);
+      right.fork();
+      FrequencyCounter c =
+	new CountTask(channel, charset, progress, bounds, first, mid).compute();
+      c.add(right.join());
+      return c;
+    }
+  }
+
+  /**
+   * An InputStream recording the number of bytes read as progress.
+   */
+  private static class ProgressInputStream extends FilterInputStream {
+
+    /**
+     * The ProgressTracker.
+     */
+    private ProgressTracker progress;
+
+    /**
+     * Constructs a ProgressInputStream reading the given InputStream.
+     */
+    public ProgressInputStream(InputStream in, ProgressTracker pt) {
+      super(in);
+      progress = pt;
+    }
+
+    /**
+     * Reads a byte.
+     */
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) progress.add(1);
+      return b;
+    }
+
+    /**
+     * Reads bytes into a portion of an array.
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) progress.add(n);
+      return n;
+    }
+  }
+}
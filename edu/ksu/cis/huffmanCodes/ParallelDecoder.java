@@ -0,0 +1,330 @@
+// File: ParallelDecoder.java
+// Decodes the blocks of an encoding using several threads.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decodes an encoding produced by a ParallelEncoder using several threads.
+ * The BlockIndex gives the bit at which each block begins and the offset
+ * of its first symbol, so the blocks are decoded concurrently on a
+ * ForkJoinPool, each directly into its own region of the output array.
+ * The result is the same as decoding the whole encoding with one
+ * HuffmanDecoder.  An encoding preceded by the header written by
+ * ParallelEncoder.writeHeader, such as a file written by
+ * ParallelEncoder.encode(Path, Path), carries its own tree and BlockIndex,
+ * and is decoded by the static decode methods without either being given.
+ */
+public class ParallelDecoder {
+
+  /**
+   * The decoder for the codes.
+   */
+  private HuffmanDecoder decoder;
+
+  /**
+   * The pool on which blocks are decoded.
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * Constructs a ParallelDecoder for the codes of the given HuffmanTree,
+   * decoding on the common ForkJoinPool.
+   */
+  public ParallelDecoder(HuffmanTree t) {
+    this(t, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Constructs a ParallelDecoder for the codes of the given HuffmanTree,
+   * decoding on the given ForkJoinPool.
+   */
+  public ParallelDecoder(HuffmanTree t, ForkJoinPool p) {
+    decoder = t.getDecoder();
+    pool = p;
+  }
+
+  /**
+   * Decodes all the blocks of the given encoding into the given array,
+   * beginning at index off.
+   * @param in     The encoding, beginning at its position, which is not
+   *               changed.
+   * @param index  The BlockIndex of the encoding.
+   * @throws IndexOutOfBoundsException  If the decoded characters do not fit.
+   * @throws java.io.EOFException       If the encoding ends too soon.
+   * @throws IOException                If an I/O error occurs.
+   */
+  public void decode(ByteBuffer in, BlockIndex index, char[] out, int off)
+    throws IOException {
+    checkRoom(index, out.length, off);
+    run(index, b -> decoder.decode(index.getReader(in, b), out,
+				    off + (int) index.getSymbolOffset(b),
+				    index.getBlockLength(b)));
+  }
+
+  /**
+   * Decodes all the blocks of the given encoding into the given array,
+   * beginning at index off.
+   * @param in     The encoding, beginning at its position, which is not
+   *               changed.
+   * @param index  The BlockIndex of the encoding.
+   * @throws IllegalStateException      If the tree has symbols that are not
+   *                                    bytes.
+   * @throws IndexOutOfBoundsException  If the decoded bytes do not fit.
+   * @throws java.io.EOFException       If the encoding ends too soon.
+   * @throws IOException                If an I/O error occurs.
+   */
+  public void decode(ByteBuffer in, BlockIndex index, byte[] out, int off)
+    throws IllegalStateException, IOException {
+    checkRoom(index, out.length, off);
+    run(index, b -> decoder.decode(index.getReader(in, b), out,
+				    off + (int) index.getSymbolOffset(b),
+				    index.getBlockLength(b)));
+  }
+
+  /**
+   * Decodes the encoding in the given ByteBuffer, beginning at its
+   * position with the header written by ParallelEncoder.writeHeader, on
+   * the common ForkJoinPool.  The position is advanced past the encoding.
+   * @returns  The decoded symbols; if they are bytes, each char holds the
+   *           value of a byte.
+   * @throws   IndexOutOfBoundsException  If there are too many symbols to
+   *                                      fit in an array.
+   * @throws   IOException                If the header is invalid or the
+   *                                      encoding ends too soon.
+   */
+  public static char[] decode(ByteBuffer in) throws IOException {
+    return decode(in, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decodes the encoding in the given ByteBuffer, beginning at its
+   * position with the header written by ParallelEncoder.writeHeader, on
+   * the given ForkJoinPool.  The position is advanced past the encoding.
+   * @returns  The decoded symbols; if they are bytes, each char holds the
+   *           value of a byte.
+   * @throws   IndexOutOfBoundsException  If there are too many symbols to
+   *                                      fit in an array.
+   * @throws   IOException                If the header is invalid or the
+   *                                      encoding ends too soon.
+   */
+  public static char[] decode(ByteBuffer in, ForkJoinPool p)
+    throws IOException {
+    DataInputStream d = new DataInputStream(new BufferInputStream(in));
+    HuffmanTree t = readHeader(d);
+    BlockIndex index = BlockIndex.read(d);
+    if (index.getByteCount() > in.remaining())
+      throw new EOFException("Encoding is truncated");
+    if (index.getSymbolCount() > Integer.MAX_VALUE)
+      throw new IndexOutOfBoundsException("Too many symbols for an array");
+    char[] out = new char[(int) index.getSymbolCount()];
+    new ParallelDecoder(t, p).decode(in, index, out, 0);
+    in.position(in.position() + (int) index.getByteCount());
+    return out;
+  }
+
+  /**
+   * Decodes a file written by ParallelEncoder.encode(Path, Path) into
+   * another, which is created or truncated, on the common ForkJoinPool.
+   * @throws IllegalStateException  If the tree has symbols that are not
+   *                                bytes.
+   * @throws IOException            If an I/O error occurs, the header is
+   *                                invalid or the encoding ends too soon.
+   */
+  public static void decode(Path in, Path out)
+    throws IllegalStateException, IOException {
+    decode(in, out, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decodes a file written by ParallelEncoder.encode(Path, Path) into
+   * another, which is created or truncated, on the given ForkJoinPool.
+   * Each block is mapped, decoded and written on its own, so neither file
+   * needs to fit in memory.
+   * @throws IllegalStateException  If the tree has symbols that are not
+   *                                bytes.
+   * @throws IOException            If an I/O error occurs, the header is
+   *                                invalid or the encoding ends too soon.
+   */
+  public static void decode(Path in, Path out, ForkJoinPool p)
+    throws IllegalStateException, IOException {
+    try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+	 FileChannel dst = FileChannel.open(out, StandardOpenOption.WRITE,
+					    StandardOpenOption.CREATE,
+					    StandardOpenOption.TRUNCATE_EXISTING)) {
+      // The stream reads no more than is asked for, so the channel is left
+      // at the beginning of the encoding.
+      DataInputStream d = new DataInputStream(Channels.newInputStream(src));
+      HuffmanTree t = readHeader(d);
+      BlockIndex index = BlockIndex.read(d);
+      long base = src.position();
+      if (index.getByteCount() > src.size() - base)
+	throw new EOFException("Encoding is truncated");
+      ParallelDecoder pd = new ParallelDecoder(t, p);
+      pd.run(index, b -> {
+	  int n = index.getBlockLength(b);
+	  if (n == 0) return;
+	  long start = index.getBitOffset(b);
+	  long first = start >>> 3;
+	  int len = (int) (((index.getBitOffset(b + 1) + 7) >>> 3) - first);
+	  ByteBuffer buf =
+	    src.map(FileChannel.MapMode.READ_ONLY, base + first, len);
+	  byte[] block = new byte[n];
+	  pd.decoder.decode(new BitReader(buf, start & 7), block, 0, n);
+	  ByteBuffer w = ByteBuffer.wrap(block);
+	  long pos = index.getSymbolOffset(b);
+	  while (w.hasRemaining()) dst.write(w, pos + w.position());
+	});
+    }
+  }
+
+  /**
+   * Reads the version and the tree from the header written by
+   * ParallelEncoder.writeHeader, leaving the BlockIndex to be read.
+   * @throws IOException  If the header is invalid.
+   */
+  private static HuffmanTree readHeader(DataInput in) throws IOException {
+    int version = in.readUnsignedByte();
+    if (version != ParallelEncoder.FORMAT_VERSION)
+      throw new IOException("Unsupported format version: " + version);
+    return HuffmanTree.read(in);
+  }
+
+  /**
+   * Throws an IndexOutOfBoundsException unless all the symbols of the
+   * given index fit in an array of the given size beginning at index off.
+   */
+  private static void checkRoom(BlockIndex index, int size, int off)
+    throws IndexOutOfBoundsException {
+    if (off < 0 || index.getSymbolCount() > size - off)
+      throw new IndexOutOfBoundsException("Output array too small");
+  }
+
+  /**
+   * Decodes every block of the given index on the pool, rethrowing any
+   * IOException.
+   */
+  private void run(BlockIndex index, BlockDecoder d)
+    throws IOException {
+    try {
+      pool.invoke(new DecodeTask(d, 0, index.getBlockCount()));
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Decodes a single block.
+   */
+  private interface BlockDecoder {
+
+    /**
+     * Decodes the given block.
+     */
+    void decode(int block) throws IOException;
+  }
+
+  /**
+   * Decodes a range of blocks, splitting the range among subtasks.
+   */
+  private static class DecodeTask extends RecursiveAction {
+
+    /**
+     * Decodes each block.
+     */
+    private transient BlockDecoder decoder;
+
+    /**
+     * The first block to decode.
+     */
+    private int first;
+
+    /**
+     * The index following the last block to decode.
+     */
+    private int last;
+
+    /**
+     * Used for consistency in serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a task decoding blocks first through last - 1.
+     */
+    public DecodeTask(BlockDecoder d, int first, int last) {
+      decoder = d;
+      this.first = first;
+      this.last = last;
+    }
+
+    /**
+     * Decodes the blocks.
+     */
+    protected void compute() {
+      if (last - first <= 1) {
+	try {
+	  for (int i = first; i < last; i++) decoder.decode(i);
+	}
+	catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+	return;
+      }
+      int mid = (first + last) >>> 1;
+      invokeAll(new DecodeTask(decoder, first, mid),
+		new DecodeTask(decoder, mid, last));
+    }
+  }
+
+  /**
+   * An InputStream reading the bytes remaining in a ByteBuffer, advancing
+   * its position.
+   */
+  private static class BufferInputStream extends InputStream {
+
+    /**
+     * The bytes.
+     */
+    private ByteBuffer buf;
+
+    /**
+     * Constructs a BufferInputStream reading the given ByteBuffer.
+     */
+    public BufferInputStream(ByteBuffer b) {
+      buf = b;
+    }
+
+    /**
+     * Reads a byte.
+     */
+    public int read() {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    /**
+     * Reads bytes into a portion of an array.
+     */
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) return 0;
+      if (!buf.hasRemaining()) return -1;
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+  }
+}
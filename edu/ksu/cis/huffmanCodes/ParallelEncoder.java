@@ -0,0 +1,604 @@
+// File: ParallelEncoder.java
+// Encodes large inputs in independent blocks using several threads.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encodes large inputs using the codes of a HuffmanTree and several
+ * threads.  The input is divided into blocks of a fixed number of symbols.
+ * A first pass over the blocks, run on a ForkJoinPool, finds the length of
+ * each block's encoding; these give the offset of each block in the output
+ * and make up a BlockIndex.  A second pass encodes each block into its own
+ * buffer, beginning at the same bit within a byte as the block begins in
+ * the output.  The bytes that lie wholly within a block are then copied to
+ * the output concurrently, and the bytes shared by neighboring blocks are
+ * combined afterwards.  The output is exactly what a single BitWriter would
+ * write, and the BlockIndex allows any block of it to be decoded on its own.
+ * <p>
+ * An encoding written to a file by encode(Path, Path), or preceded by the
+ * header written by writeHeader, can be decoded by a ParallelDecoder
+ * without anything else.  The layout is:
+ * <ul>
+ * <li>the byte FORMAT_VERSION;
+ * <li>the HuffmanTree, as written by HuffmanTree.write;
+ * <li>the BlockIndex, as written by BlockIndex.write, which gives the
+ *     number of symbols and the offset of each block;
+ * <li>the encoding, whose bit offsets are counted from its first byte.
+ * </ul>
+ */
+public class ParallelEncoder {
+
+  /**
+   * The number of symbols in a block unless otherwise specified.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+  /**
+   * The version of the layout written by encode(Path, Path) and
+   * writeHeader.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  /**
+   * The tree giving the codes.
+   */
+  private HuffmanTree tree;
+
+  /**
+   * The encoder for the codes.
+   */
+  private HuffmanEncoder encoder;
+
+  /**
+   * The number of symbols in each block.
+   */
+  private int blockSize;
+
+  /**
+   * Constructs a ParallelEncoder for the codes of the given HuffmanTree,
+   * using blocks of DEFAULT_BLOCK_SIZE symbols.
+   */
+  public ParallelEncoder(HuffmanTree t) {
+    this(t, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Constructs a ParallelEncoder for the codes of the given HuffmanTree,
+   * using blocks of the given number of symbols.
+   * @throws IllegalArgumentException  If size is not positive.
+   */
+  public ParallelEncoder(HuffmanTree t, int size)
+    throws IllegalArgumentException {
+    if (size <= 0)
+      throw new IllegalArgumentException("Block size must be positive");
+    tree = t;
+    encoder = t.getEncoder();
+    blockSize = size;
+  }
+
+  /**
+   * Returns the number of symbols in each block.
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Returns the BlockIndex for the encoding of the given portion of a char
+   * array.
+   * @throws IllegalArgumentException  If a character has no code.
+   */
+  public BlockIndex index(char[] in, int off, int len)
+    throws IllegalArgumentException {
+    try {
+      return index(new CharSource(in, off, len));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e); // Not thrown by in-memory sources
+    }
+  }
+
+  /**
+   * Returns the BlockIndex for the encoding of the bytes remaining in the
+   * given ByteBuffer, whose position is not changed.
+   * @throws IllegalArgumentException  If a byte has no code.
+   */
+  public BlockIndex index(ByteBuffer in) throws IllegalArgumentException {
+    try {
+      return index(new ByteSource(in));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e); // Not thrown by in-memory sources
+    }
+  }
+
+  /**
+   * Encodes the given portion of a char array into the given ByteBuffer,
+   * beginning at its position, which is advanced past the encoding.
+   * @param index  The BlockIndex returned by index for the same input.
+   * @throws IllegalArgumentException  If the index does not match the
+   *                                   input.
+   * @throws java.nio.BufferOverflowException  If the encoding does not fit.
+   */
+  public void encode(char[] in, int off, int len, BlockIndex index,
+		     ByteBuffer out) throws IllegalArgumentException {
+    try {
+      encode(new CharSource(in, off, len), index, new BufferSink(out));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e); // Not thrown by in-memory sources
+    }
+  }
+
+  /**
+   * Encodes the bytes remaining in the given ByteBuffer into the given
+   * output ByteBuffer, beginning at its position, which is advanced past
+   * the encoding.  The position of the input is not changed.
+   * @param index  The BlockIndex returned by index for the same input.
+   * @throws IllegalArgumentException  If the index does not match the
+   *                                   input.
+   * @throws java.nio.BufferOverflowException  If the encoding does not fit.
+   */
+  public void encode(ByteBuffer in, BlockIndex index, ByteBuffer out)
+    throws IllegalArgumentException {
+    try {
+      encode(new ByteSource(in), index, new BufferSink(out));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e); // Not thrown by in-memory sources
+    }
+  }
+
+  /**
+   * Writes the header preceding an encoding with the given BlockIndex:
+   * the version, the tree and the index.  An encoding written by encode
+   * immediately after it can then be decoded by a ParallelDecoder on its
+   * own.
+   * @throws IOException  If an I/O error occurs.
+   */
+  public void writeHeader(BlockIndex index, DataOutput out)
+    throws IOException {
+    out.writeByte(FORMAT_VERSION);
+    tree.write(out);
+    index.write(out);
+  }
+
+  /**
+   * Encodes the bytes of one file into another, which is created or
+   * truncated.  The encoding is preceded by the header written by
+   * writeHeader, so that it can be decoded by ParallelDecoder.decode(Path,
+   * Path).  Neither file needs to fit in memory.
+   * @returns  The BlockIndex of the encoding.
+   * @throws   IllegalArgumentException  If a byte has no code.
+   * @throws   IOException               If an I/O error occurs.
+   */
+  public BlockIndex encode(Path in, Path out)
+    throws IllegalArgumentException, IOException {
+    try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+	 FileChannel dst = FileChannel.open(out, StandardOpenOption.WRITE,
+					    StandardOpenOption.CREATE,
+					    StandardOpenOption.TRUNCATE_EXISTING)) {
+      FileSource source = new FileSource(src);
+      BlockIndex index = index(source);
+      ByteArrayOutputStream header = new ByteArrayOutputStream();
+      writeHeader(index, new DataOutputStream(header));
+      ByteBuffer h = ByteBuffer.wrap(header.toByteArray());
+      while (h.hasRemaining()) dst.write(h, h.position());
+      encode(source, index, new FileSink(dst, h.limit()));
+      return index;
+    }
+  }
+
+  /**
+   * Finds the length of the encoding of each block of the given input.
+   */
+  private BlockIndex index(Source in) throws IOException {
+    long size = in.size();
+    int n = (int) ((size + blockSize - 1) / blockSize);
+    long[] symbols = new long[n + 1];
+    long[] bits = new long[n + 1];
+    for (int i = 0; i < n; i++) symbols[i] = (long) i * blockSize;
+    symbols[n] = size;
+    run(i -> bits[i + 1] = in.measure(symbols[i],
+				      (int) (symbols[i + 1] - symbols[i])), n);
+    for (int i = 0; i < n; i++) bits[i + 1] += bits[i];
+    return new BlockIndex(symbols, bits);
+  }
+
+  /**
+   * Encodes the given input, as described by the given BlockIndex, to the
+   * given output.
+   */
+  private void encode(Source in, BlockIndex index, Sink out)
+    throws IllegalArgumentException, IOException {
+    int n = index.getBlockCount();
+    if (index.getSymbolCount() != in.size()
+	|| (n > 1 && index.getBlockLength(0) != blockSize))
+      throw new IllegalArgumentException("Index does not match the input");
+    out.reserve(index.getByteCount());
+    byte[] first = new byte[n];
+    byte[] last = new byte[n];
+    run(i -> {
+	long start = index.getBitOffset(i);
+	long end = index.getBitOffset(i + 1);
+	int lead = (int) start & 7;
+	int len = (int) (((end + 7) >>> 3) - (start >>> 3));
+	if (len == 0) return;
+	ByteBuffer buf = ByteBuffer.allocate(len);
+	BitWriter w = new BitWriter(buf);
+	w.write(0, lead);
+	in.encode(index.getSymbolOffset(i), index.getBlockLength(i), w);
+	w.finish();
+	first[i] = buf.get(0);
+	last[i] = buf.get(len - 1);
+	if (len > 2) out.put((start >>> 3) + 1, buf.array(), 1, len - 2);
+      }, n);
+    stitch(index, first, last, out);
+    out.finish(index.getByteCount());
+  }
+
+  /**
+   * Writes the first and last byte of each block, combining the bytes of
+   * neighboring blocks that share a byte.
+   */
+  private static void stitch(BlockIndex index, byte[] first, byte[] last,
+			     Sink out) throws IOException {
+    long pos = -1;
+    int value = 0;
+    for (int i = 0; i < index.getBlockCount(); i++) {
+      long start = index.getBitOffset(i) >>> 3;
+      long end = ((index.getBitOffset(i + 1) + 7) >>> 3) - 1;
+      if (end < start) continue; // No bytes in this block
+      if (start == pos) value |= first[i];
+      else {
+	if (pos >= 0) out.put(pos, (byte) value);
+	pos = start;
+	value = first[i];
+      }
+      if (end != start) {
+	out.put(pos, (byte) value);
+	pos = end;
+	value = last[i];
+      }
+    }
+    if (pos >= 0) out.put(pos, (byte) value);
+  }
+
+  /**
+   * Applies the given action to blocks 0 through n - 1 on the common
+   * ForkJoinPool, rethrowing any IOException it throws.
+   */
+  private static void run(BlockAction a, int n) throws IOException {
+    try {
+      ForkJoinPool.commonPool().invoke(new BlockTask(a, 0, n));
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * An operation on a single block.
+   */
+  private interface BlockAction {
+
+    /**
+     * Processes the given block.
+     */
+    void process(int block) throws IOException;
+  }
+
+  /**
+   * Processes a range of blocks, splitting the range among subtasks.
+   */
+  private static class BlockTask extends RecursiveAction {
+
+    /**
+     * The operation applied to each block.
+     */
+    private transient BlockAction action;
+
+    /**
+     * The first block to process.
+     */
+    private int first;
+
+    /**
+     * The index following the last block to process.
+     */
+    private int last;
+
+    /**
+     * Used for consistency in serialization.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a task applying the given action to blocks first through
+     * last - 1.
+     */
+    public BlockTask(BlockAction a, int first, int last) {
+      action = a;
+      this.first = first;
+      this.last = last;
+    }
+
+    /**
+     * Processes the blocks.
+     */
+    protected void compute() {
+      if (last - first <= 1) {
+	try {
+	  for (int i = first; i < last; i++) action.process(i);
+	}
+	catch (IOException e) {
+	  throw new UncheckedIOException(e);
+	}
+	return;
+      }
+      int mid = (first + last) >>> 1;
+      invokeAll(new BlockTask(action, first, mid),
+		new BlockTask(action, mid, last));
+    }
+  }
+
+  /**
+   * An input divided into blocks.
+   */
+  private abstract static class Source {
+
+    /**
+     * Returns the number of symbols.
+     */
+    abstract long size();
+
+    /**
+     * Returns the number of bits needed to encode the given symbols.
+     */
+    abstract long measure(long start, int len) throws IOException;
+
+    /**
+     * Encodes the given symbols.
+     */
+    abstract void encode(long start, int len, BitWriter out)
+      throws IOException;
+  }
+
+  /**
+   * Reads symbols from a portion of a char array.
+   */
+  private class CharSource extends Source {
+
+    /**
+     * The array.
+     */
+    private char[] buf;
+
+    /**
+     * The index of the first symbol.
+     */
+    private int offset;
+
+    /**
+     * The number of symbols.
+     */
+    private int length;
+
+    /**
+     * Constructs a CharSource for the given portion of the given array.
+     */
+    public CharSource(char[] b, int off, int len) {
+      if (off < 0 || len < 0 || off + len > b.length)
+	throw new IndexOutOfBoundsException("Invalid array portion");
+      buf = b;
+      offset = off;
+      length = len;
+    }
+
+    long size() {
+      return length;
+    }
+
+    long measure(long start, int len) {
+      return encoder.measure(buf, offset + (int) start, len);
+    }
+
+    void encode(long start, int len, BitWriter out) throws IOException {
+      encoder.encode(buf, offset + (int) start, len, out);
+    }
+  }
+
+  /**
+   * Reads symbols from the bytes remaining in a ByteBuffer.
+   */
+  private class ByteSource extends Source {
+
+    /**
+     * The bytes.
+     */
+    private ByteBuffer buf;
+
+    /**
+     * Constructs a ByteSource for the given ByteBuffer.
+     */
+    public ByteSource(ByteBuffer b) {
+      buf = b.slice();
+    }
+
+    long size() {
+      return buf.remaining();
+    }
+
+    long measure(long start, int len) {
+      return encoder.measure(buf.slice((int) start, len));
+    }
+
+    void encode(long start, int len, BitWriter out) throws IOException {
+      encoder.encode(buf.slice((int) start, len), out);
+    }
+  }
+
+  /**
+   * Reads symbols from the bytes of a file, mapping one block at a time.
+   */
+  private class FileSource extends Source {
+
+    /**
+     * The file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The size of the file.
+     */
+    private long size;
+
+    /**
+     * Constructs a FileSource for the given file.
+     */
+    public FileSource(FileChannel ch) throws IOException {
+      channel = ch;
+      size = ch.size();
+    }
+
+    long size() {
+      return size;
+    }
+
+    long measure(long start, int len) throws IOException {
+      return encoder.measure(map(start, len));
+    }
+
+    void encode(long start, int len, BitWriter out) throws IOException {
+      encoder.encode(map(start, len), out);
+    }
+
+    /**
+     * Maps the given region of the file.
+     */
+    private ByteBuffer map(long start, int len) throws IOException {
+      return channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+    }
+  }
+
+  /**
+   * A destination for the encoded bytes, addressed by offset.
+   */
+  private abstract static class Sink {
+
+    /**
+     * Ensures there is room for the given number of bytes.
+     */
+    abstract void reserve(long bytes) throws IOException;
+
+    /**
+     * Writes the given portion of an array at the given offset.
+     */
+    abstract void put(long pos, byte[] b, int off, int len)
+      throws IOException;
+
+    /**
+     * Writes the given byte at the given offset.
+     */
+    abstract void put(long pos, byte b) throws IOException;
+
+    /**
+     * Completes the output, which has the given number of bytes.
+     */
+    abstract void finish(long bytes) throws IOException;
+  }
+
+  /**
+   * Writes into a ByteBuffer, beginning at its position.
+   */
+  private static class BufferSink extends Sink {
+
+    /**
+     * The ByteBuffer.
+     */
+    private ByteBuffer buf;
+
+    /**
+     * The position at which the output begins.
+     */
+    private int base;
+
+    /**
+     * Constructs a BufferSink for the given ByteBuffer.
+     */
+    public BufferSink(ByteBuffer b) {
+      buf = b;
+      base = b.position();
+    }
+
+    void reserve(long bytes) {
+      if (bytes > buf.remaining())
+	throw new java.nio.BufferOverflowException();
+    }
+
+    void put(long pos, byte[] b, int off, int len) {
+      buf.put(base + (int) pos, b, off, len);
+    }
+
+    void put(long pos, byte b) {
+      buf.put(base + (int) pos, b);
+    }
+
+    void finish(long bytes) {
+      buf.position(base + (int) bytes);
+    }
+  }
+
+  /**
+   * Writes into a file using positional writes, which may be concurrent.
+   */
+  private static class FileSink extends Sink {
+
+    /**
+     * The file.
+     */
+    private FileChannel channel;
+
+    /**
+     * The offset in the file at which the output begins.
+     */
+    private long base;
+
+    /**
+     * Constructs a FileSink writing to the given file from the given
+     * offset.
+     */
+    public FileSink(FileChannel ch, long offset) {
+      channel = ch;
+      base = offset;
+    }
+
+    void reserve(long bytes) {
+    }
+
+    void put(long pos, byte[] b, int off, int len) throws IOException {
+      ByteBuffer src = ByteBuffer.wrap(b, off, len);
+      while (src.hasRemaining())
+	channel.write(src, base + pos + src.position() - off);
+    }
+
+    void put(long pos, byte b) throws IOException {
+      put(pos, new byte[] { b }, 0, 1);
+    }
+
+    void finish(long bytes) {
+    }
+  }
+}
@@ -3,24 +3,63 @@
 
 package edu.ksu.cis.huffmanCodes;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 /**
- * A min-priority-queue.  The elements are Objects keyed by <tt>int</tt>s.
- * Smaller keys have higher priority.
+ * A min-priority-queue.  The elements are nonnegative <tt>int</tt> node
+ * indices keyed by <tt>long</tt>s.  Smaller keys have higher priority, and
+ * among equal keys, smaller indices have higher priority, so the order in
+ * which elements are removed is fully determined by their keys and indices.
+ * The heap is stored as two parallel arrays, so inserting an element
+ * allocates nothing unless the arrays must grow.
  */
 class PriorityQueue {
 
   /**
-   * The key-element pairs.
+   * The keys, in heap order.
    */
-  private Vector<KeyElement> data = new Vector<>();
+  private long[] keys;
+
+  /**
+   * The elements, in heap order.
+   */
+  private int[] nodes;
+
+  /**
+   * The number of elements.
+   */
+  private int size;
 
   /**
    * Constructs an empty PriorityQueue.
    */
   public PriorityQueue() {
-    data.add(new KeyElement(0x80000000, null));
+    this(16);
+  }
+
+  /**
+   * Constructs an empty PriorityQueue with room for the given number of
+   * elements.
+   */
+  public PriorityQueue(int capacity) {
+    keys = new long[Math.max(capacity, 1)];
+    nodes = new int[keys.length];
+  }
+
+  /**
+   * Constructs a PriorityQueue containing the first n of the given
+   * key-element pairs, arranging them into a heap in O(n) time.  The given
+   * arrays are used to store the heap, so they must not be modified by the
+   * caller afterwards.
+   * @param k  The keys.
+   * @param e  The elements.
+   * @param n  The number of pairs.
+   */
+  public PriorityQueue(long[] k, int[] e, int n) {
+    keys = k;
+    nodes = e;
+    size = n;
+    for (int i = n/2 - 1; i >= 0; i--) siftDown(keys[i], nodes[i], i);
   }
 
   /**
@@ -28,26 +67,30 @@ class PriorityQueue {
    * @param key  The priority.
    * @param el   The element.
    */
-  public void put(int key, Object el) {
-    int i = data.size();
-    int j = i/2;
-    data.add(null);
-    KeyElement parent = data.elementAt(j);
-    while (parent.getKey() > key) {
-      data.setElementAt(parent, i);
+  public void put(long key, int el) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, 2 * size);
+      nodes = Arrays.copyOf(nodes, 2 * size);
+    }
+    int i = size++;
+    while (i > 0) {
+      int j = (i - 1)/2;
+      if (!follows(keys[j], nodes[j], key, el)) break;
+      keys[i] = keys[j];
+      nodes[i] = nodes[j];
       i = j;
-      j = j/2;
-      parent = data.elementAt(j);
     }
-    data.setElementAt(new KeyElement(key, el), i);
+    keys[i] = key;
+    nodes[i] = el;
   }
 
   /**
    * Returns the minimum key in the priority queue.
    * @throws ArrayIndexOutOfBoundsException  If the PriorityQueue is empty.
    */
-  public int minKey() throws ArrayIndexOutOfBoundsException {
-    return data.elementAt(1).getKey();
+  public long minKey() throws ArrayIndexOutOfBoundsException {
+    checkNotEmpty();
+    return keys[0];
   }
 
   /**
@@ -55,21 +98,11 @@ class PriorityQueue {
    * @returns  The element with minimum key.
    * @throws   ArrayIndexOutOfBoundsException  If the PriorityQueue is empty.
    */
-  public Object removeMin() throws ArrayIndexOutOfBoundsException {
-    Object min = data.elementAt(1).getElement();
-    KeyElement last = data.remove(data.size() - 1);
-    int key = last.getKey();
-    int i = 1;
-    int j = 2;
-    while (j < data.size()) {
-      if (j+1 < data.size() && data.elementAt(j).getKey() >
-	  data.elementAt(j+1).getKey()) j++;
-      if (data.elementAt(j).getKey() > key) break;
-      data.setElementAt(data.elementAt(j), i);
-      i = j;
-      j *= 2;
-    }
-    if (i < data.size()) data.setElementAt(last, i);
+  public int removeMin() throws ArrayIndexOutOfBoundsException {
+    checkNotEmpty();
+    int min = nodes[0];
+    size--;
+    if (size > 0) siftDown(keys[size], nodes[size], 0);
     return min;
   }
 
@@ -77,60 +110,56 @@ class PriorityQueue {
    * Returns the element having minimum key, without removing it.
    * @throws ArrayIndexOutOfBoundsException  If the PriorityQueue is empty.
    */
-  public Object minElement() throws ArrayIndexOutOfBoundsException {
-    return data.elementAt(1);
+  public int minElement() throws ArrayIndexOutOfBoundsException {
+    checkNotEmpty();
+    return nodes[0];
   }
 
   /**
    * Returns <tt>true</tt> if the priority queue is empty.
    */
   public boolean isEmpty() {
-    return data.size() == 1;
+    return size == 0;
   }
 
   /**
    * Returns the number of elements in the priority queue.
    */
   public int size() {
-    return data.size() - 1;
+    return size;
   }
-}
-
-/**
- * Key-element pairs for the PriorityQueue.  Keys are positive integers,
- * elements are objects.
- */
-class KeyElement {
-
-  /**
-   * The key.
-   */
-  private int theKey;
 
   /**
-   * The element.
+   * Places the given key-element pair at or below location i, moving
+   * smaller pairs up as necessary.
    */
-  private Object theElement;
-
-  /**
-   * Constructs a new KeyElement from the given key and element.
-   */
-  public KeyElement(int key, Object element) {
-    theKey = key;
-    theElement = element;
+  private void siftDown(long key, int el, int i) {
+    int j = 2*i + 1;
+    while (j < size) {
+      if (j+1 < size && follows(keys[j], nodes[j], keys[j+1], nodes[j+1]))
+	j++;
+      if (follows(keys[j], nodes[j], key, el)) break;
+      keys[i] = keys[j];
+      nodes[i] = nodes[j];
+      i = j;
+      j = 2*i + 1;
+    }
+    keys[i] = key;
+    nodes[i] = el;
   }
 
   /**
-   * Returns the key.
+   * Returns <tt>true</tt> if the first key-element pair has lower priority
+   * than the second.
    */
-  public int getKey() {
-    return theKey;
+  private static boolean follows(long k1, int e1, long k2, int e2) {
+    return k1 > k2 || (k1 == k2 && e1 > e2);
   }
 
   /**
-   * Returns the element.
+   * Throws an ArrayIndexOutOfBoundsException if the PriorityQueue is empty.
    */
-  public Object getElement() {
-    return theElement;
+  private void checkNotEmpty() throws ArrayIndexOutOfBoundsException {
+    if (size == 0) throw new ArrayIndexOutOfBoundsException("Empty queue");
   }
 }
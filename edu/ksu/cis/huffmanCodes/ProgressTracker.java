@@ -0,0 +1,85 @@
+// File: ProgressTracker.java
+// Tracks the progress of a computation that may be cancelled.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a computation that may be cancelled.  The
+ * computation, possibly running on several threads, records the amount of
+ * work it has done and the phase it is in; another thread may read these
+ * at any time, and may cancel the computation, which then stops with a
+ * CancellationException the next time it records progress.
+ */
+public class ProgressTracker {
+
+  /**
+   * The amount of work done.
+   */
+  private AtomicLong done = new AtomicLong();
+
+  /**
+   * A description of the current phase.
+   */
+  private volatile String phase = "";
+
+  /**
+   * Indicates whether the computation has been cancelled.
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * Records that the given amount of work has been done.
+   * @throws CancellationException  If the computation has been cancelled.
+   */
+  public void add(long n) throws CancellationException {
+    done.addAndGet(n);
+    checkCancelled();
+  }
+
+  /**
+   * Returns the amount of work done so far.
+   */
+  public long getDone() {
+    return done.get();
+  }
+
+  /**
+   * Records that the computation has entered the given phase.
+   * @throws CancellationException  If the computation has been cancelled.
+   */
+  public void setPhase(String p) throws CancellationException {
+    phase = p;
+    checkCancelled();
+  }
+
+  /**
+   * Returns a description of the current phase.
+   */
+  public String getPhase() {
+    return phase;
+  }
+
+  /**
+   * Cancels the computation.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the computation has been cancelled.
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Throws a CancellationException if the computation has been cancelled.
+   */
+  public void checkCancelled() throws CancellationException {
+    if (cancelled) throw new CancellationException("Cancelled");
+  }
+}
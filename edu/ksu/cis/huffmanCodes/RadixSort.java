@@ -0,0 +1,54 @@
+// File: RadixSort.java
+// A stable radix sort of indices by long keys.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.util.Arrays;
+
+/**
+ * A stable least-significant-digit radix sort of an array of indices,
+ * keyed by nonnegative <tt>long</tt>s.  Only as many byte-wide passes are
+ * made as are needed for the largest key.
+ */
+class RadixSort {
+
+  /**
+   * The number of bits in each digit.
+   */
+  private static final int DIGIT_BITS = 8;
+
+  /**
+   * The number of distinct digits.
+   */
+  private static final int RADIX = 1 << DIGIT_BITS;
+
+  /**
+   * Sorts the given indices in nondecreasing order of their keys.
+   * Indices having equal keys retain their relative order.
+   * @param perm  The indices to be sorted.
+   * @param keys  The keys, indexed by the elements of perm.
+   */
+  public static void sort(int[] perm, long[] keys) {
+    int n = perm.length;
+    long max = 0;
+    for (int i = 0; i < n; i++) max |= keys[perm[i]];
+    int[] from = perm;
+    int[] to = new int[n];
+    int[] start = new int[RADIX + 1];
+    for (int shift = 0; shift < 64 && (max >>> shift) != 0; 
+	 shift += DIGIT_BITS) {
+      Arrays.fill(start, 0);
+      for (int i = 0; i < n; i++) 
+	start[((int) (keys[from[i]] >>> shift) & (RADIX - 1)) + 1]++;
+      for (int d = 0; d < RADIX; d++) start[d + 1] += start[d];
+      for (int i = 0; i < n; i++) {
+	int d = (int) (keys[from[i]] >>> shift) & (RADIX - 1);
+	to[start[d]++] = from[i];
+      }
+      int[] t = from;
+      from = to;
+      to = t;
+    }
+    if (from != perm) System.arraycopy(from, 0, perm, 0, n);
+  }
+}
@@ -0,0 +1,75 @@
+// File: TableOrder.java
+// The orders in which a frequency table can be sorted.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.util.Comparator;
+
+/**
+ * The orders in which a frequency table can be sorted.  Each is described
+ * by a Comparator, but a FrequencyTableModel sorts in these orders using
+ * the primitive keys of the entries rather than the Comparator.  Sorting
+ * in an order that is not total keeps entries that are equal in that
+ * order in their current order.
+ */
+public enum TableOrder {
+
+  /**
+   * Descending order of count, then ascending order of code length, then
+   * ascending order of code.  This order is total.
+   */
+  DEFAULT,
+
+  /**
+   * Ascending order of character or byte value.  This order is total.
+   */
+  CHARACTER,
+
+  /**
+   * Ascending order of code.  Because no code is a prefix of another, this
+   * order is total.
+   */
+  ENCODING,
+
+  /**
+   * Ascending order of code length.
+   */
+  ENCODING_LENGTH,
+
+  /**
+   * Descending order of count.
+   */
+  COUNT;
+
+  /**
+   * Returns <tt>true</tt> if no two entries of a frequency table are equal
+   * in this order, so that sorting in it gives the same result whatever
+   * the current order.
+   */
+  boolean isTotal() {
+    return this != ENCODING_LENGTH && this != COUNT;
+  }
+
+  /**
+   * Returns a Comparator giving this order.
+   */
+  public Comparator<FrequencyTableEntry> getComparator() {
+    switch (this) {
+    case DEFAULT:
+      return new ComparatorCombination<FrequencyTableEntry>
+	(COUNT.getComparator(),
+	 new ComparatorCombination<FrequencyTableEntry>
+	 (FrequencyTableEntry.getEncodingLengthComparator(),
+	  FrequencyTableEntry.getEncodingComparator()));
+    case CHARACTER:
+      return FrequencyTableEntry.getCharacterComparator();
+    case ENCODING:
+      return FrequencyTableEntry.getEncodingComparator();
+    case ENCODING_LENGTH:
+      return FrequencyTableEntry.getEncodingLengthComparator();
+    default:
+      return new ReverseComparator<FrequencyTableEntry>
+	(FrequencyTableEntry.getCountComparator());
+    }
+  }
+}
@@ -0,0 +1,246 @@
+// File: TreeBuilder.java
+// Builds a Huffman tree in the background and then displays it.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+/**
+ * Builds a Huffman tree from a file or a String on a background thread,
+ * then displays it in a HuffmanFrame, which is created on the event
+ * dispatch thread.  The input is counted, the tree and its codes are
+ * taken from the driver's TreeCache, or built if it is not there, the
+ * frequency table is built and sorted, and the tree to be drawn is laid
+ * out, all in the background.  While this is done, a ProgressMonitor
+ * shows the phase and the amount of input read, and allows the build to
+ * be cancelled.  Each TreeBuilder runs on a virtual thread of its own,
+ * rather than on SwingWorker's default executor, which runs at most ten
+ * workers at once, so any number of inputs may be built at once.
+ */
+class TreeBuilder extends SwingWorker<HuffmanTree, Void> {
+
+  /**
+   * The interval between updates of the ProgressMonitor, in milliseconds.
+   */
+  private static final int UPDATE_INTERVAL = 200;
+
+  /**
+   * The number of steps in the ProgressMonitor.
+   */
+  private static final int STEPS = 1000;
+
+  /**
+   * The number of chars counted between reports of progress.
+   */
+  private static final int TEXT_STEP = 1 << 16;
+
+  /**
+   * Runs each TreeBuilder on a new virtual thread.
+   */
+  private static final Executor EXECUTOR =
+    Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * The driver, over which dialogs are shown.
+   */
+  private Driver theDriver;
+
+  /**
+   * The file to read, or null if a String is used.
+   */
+  private Path file;
+
+  /**
+   * The String to use if no file is read.
+   */
+  private String text;
+
+  /**
+   * Indicates whether the file is to be read as bytes.
+   */
+  private boolean binary;
+
+  /**
+   * The maximum code length, or 0 if there is none.
+   */
+  private int lengthLimit;
+
+  /**
+   * The size of the input, in bytes for a file or chars for a String.
+   */
+  private volatile long size;
+
+  /**
+   * The progress of the build.
+   */
+  private ProgressTracker progress = new ProgressTracker();
+
+  /**
+   * The frequency table, sorted, once it has been built.
+   */
+  private FrequencyTableEntry[] table;
+
+  /**
+   * The dialog showing progress.
+   */
+  private ProgressMonitor monitor;
+
+  /**
+   * The Timer updating the ProgressMonitor.
+   */
+  private Timer timer;
+
+  /**
+   * Constructs a TreeBuilder for the given file.
+   * @param d      The driver.
+   * @param p      The file.
+   * @param bytes  If <tt>true</tt>, the bytes of the file are counted;
+   *               otherwise, its characters are.
+   * @param limit  The maximum code length, or 0 if there is none.
+   */
+  public TreeBuilder(Driver d, Path p, boolean bytes, int limit) {
+    theDriver = d;
+    file = p;
+    binary = bytes;
+    lengthLimit = limit;
+  }
+
+  /**
+   * Constructs a TreeBuilder for the given String.
+   * @param d      The driver.
+   * @param s      The String.
+   * @param limit  The maximum code length, or 0 if there is none.
+   */
+  public TreeBuilder(Driver d, String s, int limit) {
+    theDriver = d;
+    text = s;
+    size = s.length();
+    lengthLimit = limit;
+  }
+
+  /**
+   * Shows the ProgressMonitor and starts the build.  This method must be
+   * called on the event dispatch thread.
+   */
+  public void start() {
+    String name = file == null ? "text" : file.getFileName().toString();
+    monitor = new ProgressMonitor(theDriver, "Building Huffman tree for " +
+				  name, "Starting", 0, STEPS);
+    timer = new Timer(UPDATE_INTERVAL, e -> updateMonitor());
+    timer.start();
+    EXECUTOR.execute(this);
+  }
+
+  /**
+   * Updates the ProgressMonitor, cancelling the build if the user has
+   * asked to.
+   */
+  private void updateMonitor() {
+    if (monitor.isCanceled()) {
+      progress.cancel();
+      cancel(true);
+      return;
+    }
+    long n = progress.getDone();
+    int step = size > 0 ? (int) Math.min(STEPS - 1, n * STEPS / size) : 0;
+    monitor.setNote(progress.getPhase());
+    monitor.setProgress(step);
+  }
+
+  /**
+   * Builds the tree.
+   * @throws CancellationException  If the build is cancelled.
+   * @throws IOException            If the file cannot be read.
+   */
+  protected HuffmanTree doInBackground() throws IOException {
+    progress.setPhase("Reading input");
+    FrequencyCounter counter;
+    if (file != null) {
+      size = Files.size(file);
+      counter = ParallelCounter.count
+	(file, binary ? null : Charset.defaultCharset(), progress);
+    }
+    else counter = count(text);
+    progress.setPhase("Building tree");
+    HuffmanTree t = theDriver.getTreeCache().get(counter, lengthLimit);
+    progress.setPhase("Building frequency table");
+    table = HuffmanFrame.sortedTable(t);
+    progress.setPhase("Laying out tree");
+    t.prepareDrawing();
+    progress.setPhase("Displaying tree");
+    return t;
+  }
+
+  /**
+   * Counts the characters of the given String, recording progress.
+   */
+  private FrequencyCounter count(String s) {
+    FrequencyCounter counter = new FrequencyCounter();
+    char[] buf = new char[Math.min(TEXT_STEP, s.length())];
+    for (int i = 0; i < s.length(); i += TEXT_STEP) {
+      int n = Math.min(TEXT_STEP, s.length() - i);
+      s.getChars(i, i + n, buf, 0);
+      counter.add(buf, 0, n);
+      progress.add(n);
+    }
+    return counter;
+  }
+
+  /**
+   * Displays the tree once it has been built, or reports the error that
+   * prevented it from being built.
+   */
+  protected void done() {
+    timer.stop();
+    monitor.close();
+    if (isCancelled()) return;
+    try {
+      HuffmanFrame f = new HuffmanFrame(get(), table);
+      f.setTitle(file == null ? "Huffman Tree"
+		 : "Huffman Tree: " + file.getFileName());
+      f.setVisible(true);
+    }
+    catch (InterruptedException e) {
+      // This shouldn't happen, as the build has finished.
+      e.printStackTrace();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CancellationException) return;
+      else if (cause instanceof IOException)
+	showWarning(cause.getMessage(), "I/O Error");
+      else if (cause instanceof IllegalArgumentException)
+	showWarning(cause.getMessage(), "Invalid Code Length");
+      else if (cause instanceof SecurityException)
+	showWarning("Access to the file system is prohibited.",
+		    "Security Error");
+      else if (cause instanceof NoClassDefFoundError)
+	showWarning("Package EDU.ksu.cis.viewer not found.", "Load Error");
+      else if (cause instanceof OutOfMemoryError)
+	showWarning("The input is too large.", "Out of Memory");
+      else showWarning(String.valueOf(cause), "Error");
+    }
+    catch (NoClassDefFoundError e) {
+      showWarning("Package EDU.ksu.cis.viewer not found.", "Load Error");
+    }
+  }
+
+  /**
+   * Shows a warning dialog over the driver.
+   */
+  private void showWarning(String message, String title) {
+    JOptionPane.showMessageDialog(theDriver, message, title,
+				  JOptionPane.WARNING_MESSAGE);
+  }
+}
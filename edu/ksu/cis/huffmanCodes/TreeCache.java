@@ -0,0 +1,373 @@
+// File: TreeCache.java
+// A cache of Huffman trees, keyed by the counts from which they are built.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * A cache of Huffman trees, keyed by the counts from which they are built,
+ * so that analyzing the same input again, or any input with the same
+ * counts, returns the tree already built.  The trees are kept in memory up
+ * to a given total size, estimated from the sizes of their arrays, beyond
+ * which the least recently used are discarded.  If a directory is given,
+ * each tree built is also written to it in the format of HuffmanTree.write,
+ * and trees not in memory are read from it, so that they survive restarts;
+ * the directory is not bounded in size.  Each file is named by a hash of
+ * the counts, and the tree read from it is used only if it has exactly the
+ * counts sought.
+ * <p>
+ * Each request is answered with a new HuffmanTree sharing the arrays of
+ * the cached one, so the encoder, decoder and layout later built for it
+ * are freed with it rather than kept alive by the cache, and need not be
+ * counted in its size.
+ * <p>
+ * A TreeCache may be used by several threads at once.  A tree that is not
+ * cached is built without holding the lock, so two threads asking for the
+ * same missing tree may both build it; the first stored is then shared by
+ * both.
+ */
+public class TreeCache {
+
+  /**
+   * The estimated size of a cached tree apart from its arrays, in bytes.
+   */
+  private static final long TREE_OVERHEAD = 256;
+
+  /**
+   * The trees, from least to most recently used.
+   */
+  private LinkedHashMap<Key, HuffmanTree> trees =
+    new LinkedHashMap<Key, HuffmanTree>(16, 0.75f, true);
+
+  /**
+   * The estimated size of the cached trees, in bytes.
+   */
+  private long size;
+
+  /**
+   * The maximum estimated size of the cached trees, in bytes.
+   */
+  private long maxSize;
+
+  /**
+   * The directory holding the trees on disk, or null if there is none.
+   */
+  private Path directory;
+
+  /**
+   * The numbers of trees found in memory, found on disk, and built.
+   */
+  private long hits, diskHits, misses;
+
+  /**
+   * The number of trees discarded from memory.
+   */
+  private long evictions;
+
+  /**
+   * Constructs a TreeCache holding trees in memory only.
+   * @param maxSize  The maximum estimated size of the cached trees, in
+   *                 bytes.
+   * @throws IllegalArgumentException  If maxSize is negative.
+   */
+  public TreeCache(long maxSize) throws IllegalArgumentException {
+    if (maxSize < 0) throw new IllegalArgumentException("Negative size");
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Constructs a TreeCache holding trees in memory and in the given
+   * directory, which is created if it does not exist.
+   * @param maxSize  The maximum estimated size of the trees cached in
+   *                 memory, in bytes.
+   * @param dir      The directory.
+   * @throws IllegalArgumentException  If maxSize is negative.
+   * @throws IOException               If the directory cannot be created.
+   */
+  public TreeCache(long maxSize, Path dir)
+    throws IllegalArgumentException, IOException {
+    this(maxSize);
+    directory = Files.createDirectories(dir);
+  }
+
+  /**
+   * Returns the tree for the counts in the given FrequencyCounter, with
+   * codes no longer than the given length, building it if it is not
+   * cached.
+   * @param counter  The counts.
+   * @param limit    The maximum code length, or 0 if there is none.
+   * @throws IllegalArgumentException  If the maximum length is too small to
+   *                                   give every symbol a distinct code.
+   */
+  public HuffmanTree get(FrequencyCounter counter, int limit)
+    throws IllegalArgumentException {
+    Key key = new Key(counter, limit);
+    synchronized (this) {
+      HuffmanTree t = trees.get(key);
+      if (t != null) {
+	hits++;
+	return key.share(t);
+      }
+    }
+    HuffmanTree t = directory == null ? null : load(key);
+    boolean built = t == null;
+    if (built) {
+      t = limit == 0 ? new HuffmanTree(counter)
+	: new HuffmanTree(counter, limit);
+      if (directory != null) store(key, t);
+    }
+    synchronized (this) {
+      if (built) misses++;
+      else diskHits++;
+      HuffmanTree old = trees.putIfAbsent(key, t);
+      if (old != null) return key.share(old);
+      size += key.getSize();
+      Iterator<Key> it = trees.keySet().iterator();
+      while (size > maxSize && it.hasNext()) {
+	Key k = it.next();
+	it.remove();
+	size -= k.getSize();
+	evictions++;
+      }
+      return key.share(t);
+    }
+  }
+
+  /**
+   * Returns the tree for the given key stored in the directory, or null if
+   * there is none or it cannot be read.
+   */
+  private HuffmanTree load(Key key) {
+    Path p = directory.resolve(key.getFileName());
+    if (!Files.isRegularFile(p)) return null;
+    try (DataInputStream in = new DataInputStream
+	 (new BufferedInputStream(Files.newInputStream(p)))) {
+      HuffmanTree t = HuffmanTree.read(in);
+      return key.matches(t) ? t : null;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the given tree to the directory under the given key.  The tree
+   * is written to a temporary file, which is then renamed, so that a tree
+   * being written is never read.  If the tree cannot be written, it is
+   * only kept in memory.
+   */
+  private void store(Key key, HuffmanTree t) {
+    Path p = directory.resolve(key.getFileName());
+    Path tmp = null;
+    try {
+      tmp = Files.createTempFile(directory, "tree", ".tmp");
+      try (DataOutputStream out = new DataOutputStream
+	   (new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+	t.write(out);
+      }
+      try {
+	Files.move(tmp, p, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+	Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException e) {
+      try {
+	if (tmp != null) Files.deleteIfExists(tmp);
+      }
+      catch (IOException e2) {
+	// The temporary file is left behind.
+      }
+    }
+  }
+
+  /**
+   * Removes all trees from memory.  The trees on disk are kept.
+   */
+  public synchronized void clear() {
+    trees.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the number of trees in memory.
+   */
+  public synchronized int getTreeCount() {
+    return trees.size();
+  }
+
+  /**
+   * Returns the estimated size of the trees in memory, in bytes.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of requests answered from memory.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of requests answered from disk.
+   */
+  public synchronized long getDiskHits() {
+    return diskHits;
+  }
+
+  /**
+   * Returns the number of requests for which a tree was built.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of trees discarded from memory to keep within the
+   * maximum size.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns a summary of the counters.
+   */
+  public synchronized String toString() {
+    return String.format(Locale.ROOT, "%d hits, %d disk hits, %d misses, "
+			 + "%d evictions, %d trees, %.1f MB", hits, diskHits,
+			 misses, evictions, trees.size(), size / 1e6);
+  }
+
+  /**
+   * The counts from which a tree is built, and the limit on its code
+   * lengths.  A 64-bit hash of these is computed once, both to find the
+   * Key in the map and to name its file.
+   */
+  private static final class Key {
+
+    /**
+     * Indicates whether the symbols are bytes.
+     */
+    private boolean bytes;
+
+    /**
+     * The maximum code length, or 0 if there is none.
+     */
+    private int limit;
+
+    /**
+     * The symbols counted, in ascending order.
+     */
+    private int[] symbols;
+
+    /**
+     * The count of each symbol.
+     */
+    private long[] counts;
+
+    /**
+     * The hash of the other fields.
+     */
+    private long hash;
+
+    /**
+     * Constructs the Key for the counts in the given FrequencyCounter and
+     * the given limit.
+     */
+    public Key(FrequencyCounter counter, int limit) {
+      bytes = counter.isByteAlphabet();
+      this.limit = limit;
+      symbols = counter.getSymbols();
+      counts = new long[symbols.length];
+      long h = (bytes ? 1 : 2) * 0x9E3779B97F4A7C15L + limit;
+      for (int i = 0; i < symbols.length; i++) {
+	counts[i] = counter.getCount(symbols[i]);
+	h = (h ^ symbols[i]) * 0xC2B2AE3D27D4EB4FL;
+	h = (h ^ counts[i]) * 0xC2B2AE3D27D4EB4FL;
+	h ^= h >>> 29;
+      }
+      hash = h ^ h >>> 32;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the given tree has exactly these counts and
+     * limit.
+     */
+    public boolean matches(HuffmanTree t) {
+      if (t.isByteAlphabet() != bytes || t.getLengthLimit() != limit
+	  || t.getSymbolCount() != symbols.length) return false;
+      for (int i = 0; i < symbols.length; i++) {
+	if (t.getSymbol(i) != symbols[i]
+	    || t.getLongCount(Character.valueOf((char) symbols[i]))
+	       != counts[i])
+	  return false;
+      }
+      return true;
+    }
+
+    /**
+     * Returns a new HuffmanTree sharing the shape and codes of the given
+     * tree, which has these counts, but none of the state built for it
+     * later.
+     */
+    public HuffmanTree share(HuffmanTree t) {
+      return new HuffmanTree(t, counts);
+    }
+
+    /**
+     * Returns the estimated size of this Key and its tree, in bytes.  A
+     * tree with n symbols has 2n - 1 nodes, each with an int for each
+     * child and its parent and a long for its weight.  Each symbol has
+     * an int for itself and for its code length and a long for its code
+     * in the tree, and an int and a long in this Key.  The cached tree
+     * has no encoder, decoder or layout, since only the trees sharing its
+     * arrays are handed out.
+     */
+    public long getSize() {
+      long n = symbols.length;
+      return TREE_OVERHEAD + (2*n - 1) * 20 + n * 16 + n * 12;
+    }
+
+    /**
+     * Returns the name of the file holding the tree for this Key.
+     */
+    public String getFileName() {
+      return String.format("%016x-%s%d.huf", hash, bytes ? "b" : "c",
+			   limit);
+    }
+
+    /**
+     * Returns <tt>true</tt> if o is a Key with the same counts and limit.
+     */
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key k = (Key) o;
+      return hash == k.hash && bytes == k.bytes && limit == k.limit
+	&& Arrays.equals(symbols, k.symbols) && Arrays.equals(counts, k.counts);
+    }
+
+    /**
+     * Returns a hash code for this Key.
+     */
+    public int hashCode() {
+      return (int) hash;
+    }
+  }
+}
@@ -0,0 +1,313 @@
+// File: TreeLayout.java
+// The positions of the nodes in a drawing of a Huffman tree.
+
+package edu.ksu.cis.huffmanCodes;
+
+/**
+ * The positions of the nodes in a drawing of a Huffman tree.  Each node is
+ * drawn as its label in a box one line high and two characters wider than
+ * the label, and the rows of nodes are one line apart.  The nodes are
+ * placed by the algorithm of Reingold and Tilford: each node is centered
+ * over its children, and the two subtrees of a node are placed as close
+ * together as possible while keeping the boxes in each row at least one
+ * character apart.  The result is usually much narrower than placing the
+ * subtrees side by side.
+ * <p>
+ * The nodes are placed in linear time without recursion, so that trees
+ * many thousands of levels deep can be drawn.  The subtrees are joined
+ * in order of node index, which puts children before their parents;
+ * joining two subtrees follows only the facing contours down to the depth
+ * of the shallower subtree, and a contour continuing into the deeper
+ * subtree is linked to it by a thread.  The positions are then fixed from
+ * the root down.
+ * <p>
+ * Because the drawing uses a monospaced font, positions are measured in
+ * half-characters horizontally and in rows vertically, so the same
+ * layout serves every font.  The nodes of each row are also listed from
+ * left to right, so that the nodes and edges within a given region can
+ * be found by binary search.
+ */
+class TreeLayout {
+
+  /**
+   * The tree.
+   */
+  private HuffmanTree theTree;
+
+  /**
+   * The left edge of the box of each node, in half-characters.
+   */
+  private int[] boxLeft;
+
+  /**
+   * The width of the box of each node, in characters.
+   */
+  private int[] boxWidth;
+
+  /**
+   * The parent of each node, or -1 for the root.
+   */
+  private int[] parent;
+
+  /**
+   * The nodes, row by row, each row from left to right.
+   */
+  private int[] byRow;
+
+  /**
+   * The index in byRow of the first node of each row; the last element is
+   * the number of nodes.
+   */
+  private int[] rowStart;
+
+  /**
+   * The width of the drawing, in characters.
+   */
+  private int width;
+
+  /**
+   * Lays out the given tree.
+   */
+  public TreeLayout(HuffmanTree t) {
+    theTree = t;
+    int nodes = t.getNodeCount();
+    boxLeft = new int[nodes];
+    boxWidth = new int[nodes];
+    parent = new int[nodes];
+    byRow = new int[nodes];
+    if (nodes == 0) {
+      rowStart = new int[] { 0 };
+      return;
+    }
+
+    // Join the subtrees.  offset holds the position of each node relative
+    // to its parent, and height the height of each subtree.  The leftmost
+    // and rightmost nodes of the lowest row of each subtree, and their
+    // positions relative to its root, are kept to thread the contours.  A
+    // leaf whose contour continues below it has a thread to the next node
+    // of the contour, and the position of that node relative to the leaf.
+    int[] offset = new int[nodes];
+    int[] height = new int[nodes];
+    int[] lowLeft = new int[nodes];
+    int[] lowRight = new int[nodes];
+    int[] lowLeftPos = new int[nodes];
+    int[] lowRightPos = new int[nodes];
+    int[] thread = new int[nodes];
+    int[] threadPos = new int[nodes];
+    for (int i = 0; i < nodes; i++) {
+      boxWidth[i] = t.getNodeLabel(i).length() + 2;
+      int l = t.getLeft(i);
+      if (l < 0) {
+	lowLeft[i] = lowRight[i] = i;
+	continue;
+      }
+      int r = t.getRight(i);
+      parent[l] = i;
+      parent[r] = i;
+
+      // Follow the right contour of l and the left contour of r, finding
+      // the least separation of their roots, in half-characters.  Boxes
+      // are separated by twice their half-widths plus one character.
+      int a = l, b = r;     // The nodes of the contours in the same row
+      int ax = 0, bx = 0;   // Their positions relative to l and r
+      int sep = 0;
+      for (int depth = 0; ; depth++) {
+	sep = Math.max(sep, ax - bx + boxWidth[a] + boxWidth[b] + 2);
+	if (depth == Math.min(height[l], height[r])) break;
+	if (t.getLeft(a) < 0) {
+	  ax += threadPos[a];
+	  a = thread[a];
+	}
+	else {
+	  a = t.getRight(a);
+	  ax += offset[a];
+	}
+	if (t.getLeft(b) < 0) {
+	  bx += threadPos[b];
+	  b = thread[b];
+	}
+	else {
+	  b = t.getLeft(b);
+	  bx += offset[b];
+	}
+      }
+      sep += sep & 1; // Keep the parent centered on a half-character
+      offset[l] = -sep / 2;
+      offset[r] = sep / 2;
+
+      // Thread the contour of the shallower subtree to the deeper one.
+      height[i] = Math.max(height[l], height[r]) + 1;
+      if (height[l] > height[r]) {
+	int next = t.getLeft(a) < 0 ? thread[a] : t.getRight(a);
+	int nextPos = t.getLeft(a) < 0 ? ax + threadPos[a] : ax + offset[next];
+	int low = lowRight[r];
+	thread[low] = next;
+	threadPos[low] = (nextPos + offset[l]) - (lowRightPos[r] + offset[r]);
+	lowLeft[i] = lowLeft[l];
+	lowLeftPos[i] = lowLeftPos[l] + offset[l];
+	lowRight[i] = lowRight[l];
+	lowRightPos[i] = lowRightPos[l] + offset[l];
+      }
+      else if (height[r] > height[l]) {
+	int next = t.getLeft(b) < 0 ? thread[b] : t.getLeft(b);
+	int nextPos = t.getLeft(b) < 0 ? bx + threadPos[b] : bx + offset[next];
+	int low = lowLeft[l];
+	thread[low] = next;
+	threadPos[low] = (nextPos + offset[r]) - (lowLeftPos[l] + offset[l]);
+	lowLeft[i] = lowLeft[r];
+	lowLeftPos[i] = lowLeftPos[r] + offset[r];
+	lowRight[i] = lowRight[r];
+	lowRightPos[i] = lowRightPos[r] + offset[r];
+      }
+      else {
+	lowLeft[i] = lowLeft[l];
+	lowLeftPos[i] = lowLeftPos[l] + offset[l];
+	lowRight[i] = lowRight[r];
+	lowRightPos[i] = lowRightPos[r] + offset[r];
+      }
+    }
+    int root = nodes - 1;
+    parent[root] = -1;
+
+    // Fix the positions from the root down, breadth first, so that each
+    // row is listed from left to right.  The centers are kept in offset.
+    int[] depth = height; // No longer needed
+    depth[root] = 0;
+    offset[root] = 0;
+    byRow[0] = root;
+    int rows = 0;
+    int min = 0;
+    int max = 0;
+    for (int head = 0, tail = 1; head < nodes; head++) {
+      int i = byRow[head];
+      if (i != root) {
+	offset[i] += offset[parent[i]];
+	depth[i] = depth[parent[i]] + 1;
+      }
+      min = Math.min(min, offset[i] - boxWidth[i]);
+      max = Math.max(max, offset[i] + boxWidth[i]);
+      rows = depth[i] + 1;
+      int l = t.getLeft(i);
+      if (l >= 0) {
+	byRow[tail++] = l;
+	byRow[tail++] = t.getRight(i);
+      }
+    }
+    for (int i = 0; i < nodes; i++) boxLeft[i] = offset[i] - boxWidth[i] - min;
+    width = (max - min + 1) / 2;
+    rowStart = new int[rows + 1];
+    for (int k = 0; k < nodes; k++) rowStart[depth[byRow[k]] + 1]++;
+    for (int d = 0; d < rows; d++) rowStart[d + 1] += rowStart[d];
+  }
+
+  /**
+   * Returns the tree.
+   */
+  public HuffmanTree getTree() {
+    return theTree;
+  }
+
+  /**
+   * Returns the width of the drawing, in characters.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the number of rows of nodes.
+   */
+  public int getRowCount() {
+    return rowStart.length - 1;
+  }
+
+  /**
+   * Returns the index of the first node of the given row in the order
+   * given by getNode.
+   */
+  public int getRowStart(int row) {
+    return rowStart[row];
+  }
+
+  /**
+   * Returns the index just past the last node of the given row in the
+   * order given by getNode.
+   */
+  public int getRowEnd(int row) {
+    return rowStart[row + 1];
+  }
+
+  /**
+   * Returns the kth node, listing the rows from the top, and each row from
+   * left to right.
+   */
+  public int getNode(int k) {
+    return byRow[k];
+  }
+
+  /**
+   * Returns the parent of node i, or -1 if node i is the root.
+   */
+  public int getParent(int i) {
+    return parent[i];
+  }
+
+  /**
+   * Returns the left edge of the box of node i, in half-characters.
+   */
+  public int getBoxLeft(int i) {
+    return boxLeft[i];
+  }
+
+  /**
+   * Returns the width of the box of node i, in characters.
+   */
+  public int getBoxWidth(int i) {
+    return boxWidth[i];
+  }
+
+  /**
+   * Returns the center of the box of node i, in half-characters.
+   */
+  public int getCenter(int i) {
+    return boxLeft[i] + boxWidth[i];
+  }
+
+  /**
+   * Returns the position, in the order given by getNode, of the leftmost
+   * node of the given row whose box ends at or to the right of x, which
+   * is given in half-characters.  If there is none, getRowEnd(row) is
+   * returned.
+   */
+  public int findNode(int row, int x) {
+    int lo = rowStart[row];
+    int hi = rowStart[row + 1];
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      int i = byRow[mid];
+      if (boxLeft[i] + 2 * boxWidth[i] < x) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  /**
+   * Returns the position, in the order given by getNode, of the leftmost
+   * node of the given row, which must not be the first, whose edge from
+   * its parent ends at or to the right of x, which is given in
+   * half-characters.  Because edges do not cross, the edges into a row
+   * are ordered from left to right by both of their ends.  If there is no
+   * such node, getRowEnd(row) is returned.
+   */
+  public int findEdge(int row, int x) {
+    int lo = rowStart[row];
+    int hi = rowStart[row + 1];
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      int i = byRow[mid];
+      if (Math.max(getCenter(i), getCenter(parent[i])) < x) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+}
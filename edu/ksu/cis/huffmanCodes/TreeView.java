@@ -0,0 +1,319 @@
+// File: TreeView.java
+// A component displaying a large Huffman tree efficiently.
+
+package edu.ksu.cis.huffmanCodes;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.JComponent;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+
+/**
+ * A component displaying a Huffman tree as it is drawn by the package
+ * <tt>edu.ksu.cis.viewer</tt>, but suitable for trees with many thousands
+ * of nodes.  The drawing is divided into square tiles, each painted only
+ * when some part of it becomes visible, and only with the nodes and edges
+ * it intersects, which are found using the index of a TreeLayout.  Painted
+ * tiles are kept, for each font used, in a cache shared by all TreeViews,
+ * whose total size is bounded, and from which the least recently used
+ * tiles are discarded, so that scrolling back, or returning to a font used
+ * before, repaints from the cache.  A TreeView's tiles are discarded when
+ * it is removed from its window, so that closed windows hold no tiles.
+ */
+class TreeView extends JComponent implements Scrollable {
+
+  /**
+   * The width and height of a tile, in pixels.
+   */
+  private static final int TILE_SIZE = 256;
+
+  /**
+   * The maximum total size of the tiles cached for all TreeViews, in
+   * bytes.
+   */
+  private static final long MAX_CACHE_SIZE = 64L << 20;
+
+  /**
+   * The size of a tile, in bytes.
+   */
+  private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+
+  /**
+   * The painted tiles of all TreeViews, from least to most recently used.
+   * Like the components, the cache is only used on the event dispatch
+   * thread.
+   */
+  private static LinkedHashMap<TileKey, BufferedImage> tiles =
+    new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true);
+
+  /**
+   * The total size of the cached tiles, in bytes.
+   */
+  private static long cacheSize;
+
+  /**
+   * The layout of the tree.
+   */
+  private transient TreeLayout layout;
+
+  /**
+   * The width of a character in the current font.
+   */
+  private int charWidth;
+
+  /**
+   * The height of a line in the current font.
+   */
+  private int lineHeight;
+
+  /**
+   * The descent of the current font.
+   */
+  private int descent;
+
+  /**
+   * Used for consistency in serialization.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructs a TreeView displaying the given tree in the given font.
+   */
+  public TreeView(HuffmanTree t, Font f) {
+    layout = t.getLayout();
+    setOpaque(true);
+    setBackground(Color.white);
+    setFont(f);
+  }
+
+  /**
+   * Sets the font.  Tiles already painted in other fonts are kept.
+   */
+  public void setFont(Font f) {
+    super.setFont(f);
+    FontMetrics fm = getFontMetrics(f);
+    charWidth = fm.charWidth('m');
+    lineHeight = fm.getHeight();
+    descent = fm.getDescent();
+    revalidate();
+    repaint();
+  }
+
+  /**
+   * Discards the tiles of this TreeView when it is removed from its
+   * window.
+   */
+  public void removeNotify() {
+    super.removeNotify();
+    Iterator<TileKey> it = tiles.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().view == this) {
+	it.remove();
+	cacheSize -= TILE_BYTES;
+      }
+    }
+  }
+
+  /**
+   * Returns the size of the drawing.
+   */
+  public Dimension getPreferredSize() {
+    int rows = layout.getRowCount();
+    return new Dimension(layout.getWidth() * charWidth,
+			 rows == 0 ? 0 : (2 * rows - 1) * lineHeight);
+  }
+
+  /**
+   * Paints the tiles intersecting the clip region.
+   */
+  protected void paintComponent(Graphics g) {
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) clip = new Rectangle(getSize());
+    g.setColor(getBackground());
+    g.fillRect(clip.x, clip.y, clip.width, clip.height);
+    Dimension size = getPreferredSize();
+    int right = Math.min(clip.x + clip.width, size.width);
+    int bottom = Math.min(clip.y + clip.height, size.height);
+    for (int y = clip.y / TILE_SIZE * TILE_SIZE; y < bottom; y += TILE_SIZE) {
+      for (int x = clip.x / TILE_SIZE * TILE_SIZE; x < right; x += TILE_SIZE)
+	g.drawImage(getTile(x, y), x, y, null);
+    }
+  }
+
+  /**
+   * Returns the tile in the current font whose upper-left corner is at the
+   * given point, painting it if it is not in the cache.
+   */
+  private BufferedImage getTile(int x, int y) {
+    TileKey key = new TileKey(this, getFont(), x, y);
+    BufferedImage tile = tiles.get(key);
+    if (tile == null) {
+      tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+			       BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = tile.createGraphics();
+      Object hints = Toolkit.getDefaultToolkit()
+	.getDesktopProperty("awt.font.desktophints");
+      if (hints instanceof Map) g.addRenderingHints((Map<?, ?>) hints);
+      g.setColor(getBackground());
+      g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+      g.translate(-x, -y);
+      g.setFont(getFont());
+      paintTree(g, new Rectangle(x, y, TILE_SIZE, TILE_SIZE));
+      g.dispose();
+      tiles.put(key, tile);
+      cacheSize += TILE_BYTES;
+      Iterator<BufferedImage> it = tiles.values().iterator();
+      while (cacheSize > MAX_CACHE_SIZE) {
+	it.next();
+	it.remove();
+	cacheSize -= TILE_BYTES;
+      }
+    }
+    return tile;
+  }
+
+  /**
+   * Paints the nodes and edges intersecting the given rectangle.
+   */
+  private void paintTree(Graphics g, Rectangle r) {
+    g.setColor(Color.black);
+    int rowHeight = 2 * lineHeight;
+    int left = 2 * r.x / charWidth - 1; // In half-characters
+    int right = 2 * (r.x + r.width) / charWidth + 1;
+    int first = Math.max(0, (r.y - lineHeight) / rowHeight);
+    int last = Math.min(layout.getRowCount() - 1,
+			(r.y + r.height) / rowHeight);
+    for (int row = first; row <= last; row++) {
+      int top = row * rowHeight;
+      // The edges from the row above.
+      if (row > 0 && top > r.y) {
+	for (int k = layout.findEdge(row, left); k < layout.getRowEnd(row);
+	     k++) {
+	  int i = layout.getNode(k);
+	  int x = layout.getCenter(i);
+	  int px = layout.getCenter(layout.getParent(i));
+	  if (Math.min(x, px) > right) break;
+	  g.drawLine(toPixels(px), top - lineHeight, toPixels(x), top);
+	}
+      }
+      // The nodes of this row.
+      if (top < r.y + r.height && top + lineHeight > r.y) {
+	for (int k = layout.findNode(row, left); k < layout.getRowEnd(row);
+	     k++) {
+	  int i = layout.getNode(k);
+	  int x = toPixels(layout.getBoxLeft(i));
+	  if (x > r.x + r.width) break;
+	  g.drawString(layout.getTree().getNodeLabel(i), x + charWidth,
+		       top + lineHeight - descent);
+	  g.drawRect(x, top, layout.getBoxWidth(i) * charWidth - 1,
+		     lineHeight - 1);
+	}
+      }
+    }
+  }
+
+  /**
+   * Converts a position in half-characters to pixels.
+   */
+  private int toPixels(int x) {
+    return x * charWidth / 2;
+  }
+
+  /**
+   * Returns the preferred size of a viewport displaying this component.
+   */
+  public Dimension getPreferredScrollableViewportSize() {
+    return getPreferredSize();
+  }
+
+  /**
+   * Returns the distance to scroll to show a new line or character.
+   */
+  public int getScrollableUnitIncrement(Rectangle visible, int orientation,
+					int direction) {
+    return orientation == SwingConstants.VERTICAL ? lineHeight : charWidth;
+  }
+
+  /**
+   * Returns the distance to scroll to show a new page.
+   */
+  public int getScrollableBlockIncrement(Rectangle visible, int orientation,
+					 int direction) {
+    return orientation == SwingConstants.VERTICAL ? visible.height
+      : visible.width;
+  }
+
+  /**
+   * Returns <tt>false</tt>, as the width is not fit to the viewport.
+   */
+  public boolean getScrollableTracksViewportWidth() {
+    return false;
+  }
+
+  /**
+   * Returns <tt>false</tt>, as the height is not fit to the viewport.
+   */
+  public boolean getScrollableTracksViewportHeight() {
+    return false;
+  }
+
+  /**
+   * Identifies a tile by its TreeView, font and position.
+   */
+  private static final class TileKey {
+
+    /**
+     * The TreeView.
+     */
+    private TreeView view;
+
+    /**
+     * The font.
+     */
+    private Font font;
+
+    /**
+     * The position of the upper-left corner.
+     */
+    private int x, y;
+
+    /**
+     * Constructs a TileKey for the given TreeView, font and position.
+     */
+    public TileKey(TreeView v, Font f, int x, int y) {
+      view = v;
+      font = f;
+      this.x = x;
+      this.y = y;
+    }
+
+    /**
+     * Returns <tt>true</tt> if o is a TileKey for the same tile.
+     */
+    public boolean equals(Object o) {
+      if (!(o instanceof TileKey)) return false;
+      TileKey k = (TileKey) o;
+      return view == k.view && x == k.x && y == k.y && font.equals(k.font);
+    }
+
+    /**
+     * Returns a hash code for this TileKey.
+     */
+    public int hashCode() {
+      return ((System.identityHashCode(view) * 31 + font.hashCode()) * 31
+	      + x) * 31 + y;
+    }
+  }
+}